@@ -20,10 +20,11 @@
 
 package org.shredzone.commons.view;
 
+import java.util.Collections;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeSet;
 
 import javax.annotation.ParametersAreNonnullByDefault;
 
@@ -38,12 +39,19 @@ import javax.annotation.ParametersAreNonnullByDefault;
 @ParametersAreNonnullByDefault
 public abstract class AbstractPathContext implements PathContext {
 
-    private final Set<String> propSet = new HashSet<>();
     private final Map<String, Object> variables = new HashMap<>();
+    private long[] propBits = new long[1];
+    private Set<String> otherProps = Collections.emptySet();
+    private Signature signature;
 
     @Override
     public Signature getSignature() {
-        return new Signature(propSet);
+        Signature result = signature;
+        if (result == null) {
+            result = Signature.forBits(propBits, otherProps);
+            signature = result;
+        }
+        return result;
     }
 
     @Override
@@ -73,7 +81,27 @@ public abstract class AbstractPathContext implements PathContext {
      *            name of the property that was set.
      */
     protected void addProperty(String propName) {
-        propSet.add(propName);
+        if (propName.isEmpty()) {
+            return;
+        }
+
+        int id = Signature.elementId(propName);
+        if (id < 0) {
+            // Not used by any view pattern
+            if (otherProps.isEmpty()) {
+                otherProps = new TreeSet<>();
+            }
+            if (otherProps.add(propName)) {
+                signature = null;
+            }
+            return;
+        }
+
+        int word = id >>> 6;
+        if (word >= propBits.length || (propBits[word] & (1L << id)) == 0) {
+            propBits = Signature.setBit(propBits, id);
+            signature = null;
+        }
     }
 
 }
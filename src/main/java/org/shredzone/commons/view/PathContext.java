@@ -23,6 +23,7 @@ package org.shredzone.commons.view;
 import java.util.Map;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import javax.annotation.ParametersAreNonnullByDefault;
 
 /**
@@ -54,4 +55,22 @@ public interface PathContext {
      */
     @Nonnull Map<String, Object> getVariables();
 
+    /**
+     * Gets a key for caching the paths that are built from this {@link PathContext}.
+     * It is only used if the link cache of the view service is enabled.
+     * <p>
+     * Two contexts with equal cache keys, signature and qualifier must result in the
+     * same path to a view, e.g. because they refer to the same immutable entity. The
+     * key must implement {@link Object#equals(Object)} and {@link Object#hashCode()}.
+     * <p>
+     * If {@code null} is returned (which is the default), the variables of this context
+     * are used as cache key instead, but only if its signature consists of variables
+     * only.
+     *
+     * @return cache key, or {@code null} if there is none
+     */
+    default @Nullable Object getCacheKey() {
+        return null;
+    }
+
 }
@@ -20,26 +20,51 @@
 
 package org.shredzone.commons.view;
 
-import static java.util.stream.Collectors.joining;
-
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import javax.annotation.ParametersAreNonnullByDefault;
+import javax.annotation.concurrent.Immutable;
 
 /**
  * A signature is a hash key for a set of String elements. It is ensured that the same
  * collection of Strings results in an equal signature object, irregarding of the string
  * order.
  * <p>
+ * Signatures of view patterns are interned by {@link #intern()}. Each of their elements
+ * is assigned a small integer id, and each interned signature gets a unique
+ * {@link #getId()}, so it can be looked up by an array index. Any other signature is
+ * never interned and gets no id, unless there is an equal interned signature. This way,
+ * arbitrary property and variable names of path contexts do not fill up the global
+ * tables.
+ * <p>
  * Signatures are immutable.
  *
  * @author Richard "Shred" Körber
  */
 @ParametersAreNonnullByDefault
+@Immutable
 public final class Signature {
 
+    private static final Map<String, Integer> ELEMENT_IDS = new ConcurrentHashMap<>();
+    private static final List<String> ELEMENT_NAMES = new CopyOnWriteArrayList<>();
+    private static final Map<BitKey, Signature> INTERNED = new ConcurrentHashMap<>();
+
+    private final String[] elements;
+    private final long[] bits;
+    private final boolean complete;
     private final String sig;
+    private final boolean variablesOnly;
+    private volatile int id;
+    private volatile int checkedInterns;
 
     /**
      * Instantiates a new signature.
@@ -48,10 +73,31 @@ public final class Signature {
      *            collection of strings to build the signature for
      */
     public Signature(Collection<String> elements) {
-        this.sig = elements.stream()
-                .filter(e -> e != null && !e.isEmpty())
+        this.elements = elements.stream()
+                .filter(element -> element != null && !element.isEmpty())
+                .distinct()
                 .sorted()
-                .collect(joining("|"));
+                .toArray(String[]::new);
+        this.sig = String.join("|", this.elements);
+        this.variablesOnly = Arrays.stream(this.elements).allMatch(element -> element.startsWith("#"));
+
+        int interns = INTERNED.size();
+        long[] b = new long[1];
+        boolean allKnown = true;
+        for (String element : this.elements) {
+            int elementId = elementId(element);
+            if (elementId >= 0) {
+                b = setBit(b, elementId);
+            } else {
+                allKnown = false;
+            }
+        }
+        this.bits = b;
+        this.complete = allKnown;
+
+        Signature interned = allKnown ? INTERNED.get(new BitKey(b)) : null;
+        this.id = interned != null ? interned.id : -1;
+        this.checkedInterns = interns;
     }
 
     /**
@@ -64,12 +110,212 @@ public final class Signature {
         this(Arrays.asList(elements));
     }
 
+    /**
+     * Creates an interned signature.
+     */
+    private Signature(int id, long[] bits, Signature template) {
+        this.elements = template.elements;
+        this.bits = bits;
+        this.complete = true;
+        this.sig = template.sig;
+        this.variablesOnly = template.variablesOnly;
+        this.id = id;
+    }
+
+    /**
+     * Returns the interned instance of this signature. All elements are assigned an id,
+     * and the signature gets a unique {@link #getId()}.
+     * <p>
+     * Interned signatures are kept for the lifetime of the application. This method
+     * should only be invoked for the signatures of view patterns.
+     *
+     * @return Interned {@link Signature}
+     */
+    public @Nonnull Signature intern() {
+        synchronized (INTERNED) {
+            long[] b = new long[1];
+            for (String element : elements) {
+                Integer elementId = ELEMENT_IDS.get(element);
+                if (elementId == null) {
+                    elementId = ELEMENT_NAMES.size();
+                    ELEMENT_NAMES.add(element);
+                    ELEMENT_IDS.put(element, elementId);
+                }
+                b = setBit(b, elementId);
+            }
+
+            BitKey key = new BitKey(b);
+            Signature result = INTERNED.get(key);
+            if (result == null) {
+                result = new Signature(INTERNED.size(), key.bits, this);
+                INTERNED.put(key, result);
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Returns the unique id of this signature. Equal signatures have the same id. The
+     * ids are small integers, starting from 0, so they can be used as array index.
+     * <p>
+     * Only interned signatures have an id. Any other signature gets the id of the equal
+     * interned signature, or -1 if there is none. The ids are thus limited by the number
+     * of view pattern signatures.
+     *
+     * @return signature id, or -1 if there is no equal interned signature
+     */
+    public int getId() {
+        int result = id;
+        if (result < 0) {
+            int interns = INTERNED.size();
+            if (interns != checkedInterns) {
+                // Signatures were interned after the last lookup
+                Signature interned = findInterned(elements);
+                if (interned != null) {
+                    result = interned.id;
+                    id = result;
+                }
+                checkedInterns = interns;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Checks if all elements of this signature are variable names, which are prefixed
+     * with '#'. An empty signature also consists of variables only.
+     *
+     * @return {@code true} if this signature only contains variables
+     */
+    public boolean isVariablesOnly() {
+        return variablesOnly;
+    }
+
+    /**
+     * Checks if this signature contains all elements of the given signature.
+     *
+     * @param other
+     *            {@link Signature} to check
+     * @return {@code true} if all elements of the other signature are also elements of
+     *         this signature
+     */
+    public boolean containsAll(Signature other) {
+        long[] otherBits = other.bits;
+        boolean contained = true;
+        for (int ix = 0; contained && ix < otherBits.length; ix++) {
+            long mine = ix < bits.length ? bits[ix] : 0L;
+            contained = (otherBits[ix] & ~mine) == 0L;
+        }
+
+        if (contained && other.complete) {
+            return true;
+        }
+        if (!contained && complete) {
+            return false;
+        }
+
+        // Some elements had no id when the signatures were created
+        for (String element : other.elements) {
+            if (Arrays.binarySearch(elements, element) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the id of an element. Only elements of interned signatures have an id.
+     *
+     * @param element
+     *            Element, must not be empty
+     * @return element id, or -1 if the element is not part of an interned signature
+     */
+    static int elementId(String element) {
+        Integer result = ELEMENT_IDS.get(element);
+        return result != null ? result : -1;
+    }
+
+    /**
+     * Sets a bit in a bitset, growing the bitset if necessary.
+     *
+     * @param bits
+     *            Bitset
+     * @param index
+     *            Index of the bit to set
+     * @return Bitset with the bit set. This is either the given bitset, or a grown copy.
+     */
+    static long[] setBit(long[] bits, int index) {
+        int word = index >>> 6;
+        long[] result = bits;
+        if (word >= result.length) {
+            result = Arrays.copyOf(result, word + 1);
+        }
+        result[word] |= 1L << index;
+        return result;
+    }
+
+    /**
+     * Returns the signature of a bitset of element ids, and further elements without
+     * id.
+     *
+     * @param bits
+     *            Bitset of element ids. It is not changed.
+     * @param others
+     *            Further elements that have no id, may be empty
+     * @return {@link Signature}, the interned one if there is an equal one
+     */
+    static @Nonnull Signature forBits(long[] bits, Collection<String> others) {
+        if (others.isEmpty()) {
+            Signature result = INTERNED.get(new BitKey(bits));
+            if (result != null) {
+                return result;
+            }
+        }
+
+        List<String> names = new ArrayList<>(others);
+        for (int word = 0; word < bits.length; word++) {
+            long w = bits[word];
+            while (w != 0L) {
+                int bit = Long.numberOfTrailingZeros(w);
+                names.add(ELEMENT_NAMES.get((word << 6) + bit));
+                w &= w - 1;
+            }
+        }
+        return new Signature(names);
+    }
+
+    /**
+     * Finds the interned signature of the given elements.
+     *
+     * @param elements
+     *            Elements of the signature
+     * @return Interned {@link Signature}, or {@code null} if there is none
+     */
+    private static @Nullable Signature findInterned(String[] elements) {
+        long[] b = new long[1];
+        for (String element : elements) {
+            int elementId = elementId(element);
+            if (elementId < 0) {
+                return null;
+            }
+            b = setBit(b, elementId);
+        }
+        return INTERNED.get(new BitKey(b));
+    }
+
     @Override
     public boolean equals(Object obj) {
+        if (obj == this) {
+            return true;
+        }
         if (obj == null || !(obj instanceof Signature)) {
             return false;
         }
-        return ((Signature) obj).sig.equals(sig);
+        Signature other = (Signature) obj;
+        if (id >= 0 && other.id >= 0) {
+            return id == other.id;
+        }
+        return Objects.equals(sig, other.sig);
     }
 
     @Override
@@ -82,4 +328,31 @@ public final class Signature {
         return sig;
     }
 
+    /**
+     * A bitset as hash key. Trailing zero words are ignored.
+     */
+    private static final class BitKey {
+        private final long[] bits;
+        private final int hash;
+
+        private BitKey(long[] bits) {
+            int length = bits.length;
+            while (length > 0 && bits[length - 1] == 0L) {
+                length--;
+            }
+            this.bits = length == bits.length ? bits : Arrays.copyOf(bits, length);
+            this.hash = Arrays.hashCode(this.bits);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof BitKey && Arrays.equals(((BitKey) obj).bits, bits);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
 }
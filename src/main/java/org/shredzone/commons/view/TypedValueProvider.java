@@ -0,0 +1,64 @@
+/*
+ * Shredzone Commons
+ *
+ * Copyright (C) 2012 Richard "Shred" Körber
+ *   http://commons.shredzone.org
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Library General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.shredzone.commons.view;
+
+import javax.annotation.Nonnull;
+import javax.annotation.ParametersAreNonnullByDefault;
+import javax.servlet.http.HttpServletRequest;
+
+import org.shredzone.commons.view.exception.ViewContextException;
+
+/**
+ * Provides values of a certain type to the parameters of view handlers, e.g. the
+ * current user or tenant.
+ * <p>
+ * Spring beans implementing this interface are registered automatically. A provider is
+ * used for all parameter types its type is assignable to. The built-in providers for
+ * servlet objects take precedence.
+ *
+ * @param <T>
+ *            Type of the provided values
+ * @author Richard "Shred" Körber
+ */
+@ParametersAreNonnullByDefault
+public interface TypedValueProvider<T> {
+
+    /**
+     * Gets the type of the provided values.
+     *
+     * @return value type
+     */
+    @Nonnull Class<T> getType();
+
+    /**
+     * Gets the value for the current request.
+     *
+     * @param context
+     *            {@link ViewContext} of the current request
+     * @param req
+     *            {@link HttpServletRequest} of the current request
+     * @return the value, may be {@code null}
+     * @throws ViewContextException
+     *             if the value could not be provided
+     */
+    T getValue(ViewContext context, HttpServletRequest req) throws ViewContextException;
+
+}
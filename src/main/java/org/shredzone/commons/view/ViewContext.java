@@ -80,6 +80,38 @@ public interface ViewContext {
      */
     <T> T getValueOfType(@Nullable Class<T> type) throws ViewContextException;
 
+    /**
+     * Finds a value that matches the requested type. Unlike
+     * {@link #getValueOfType(Class)}, no exception is thrown if there is no data
+     * satisfying that type.
+     * <p>
+     * The default implementation invokes {@link #getValueOfType(Class)}. A
+     * {@link ViewContextException} without cause is taken as "no data", while an
+     * exception with a cause is rethrown. Implementations should override this method,
+     * so no exception needs to be created if there is no data.
+     *
+     * @param <T>
+     *            the requested type
+     * @param type
+     *            type to get a value for
+     * @param notFound
+     *            value to be returned if there was no data satisfying that type
+     * @return a value for that type, may be {@code null} if the type's value was set to
+     *         {@code null}. {@code notFound} if there was no data satisfying that type.
+     * @throws ViewContextException
+     *             if there was data satisfying that type, but it could not be accessed
+     */
+    default <T> T findValueOfType(Class<T> type, @Nullable T notFound) throws ViewContextException {
+        try {
+            return getValueOfType(type);
+        } catch (ViewContextException ex) {
+            if (ex.getCause() != null) {
+                throw ex;
+            }
+            return notFound;
+        }
+    }
+
     /**
      * Sets the path parts from resolving the view URL. Should only be invoked from the
      * {@link ViewService}.
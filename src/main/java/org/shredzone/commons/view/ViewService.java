@@ -20,6 +20,10 @@
 
 package org.shredzone.commons.view;
 
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
 import javax.annotation.Nonnull;
 import javax.annotation.ParametersAreNonnullByDefault;
 import javax.servlet.http.HttpServletRequest;
@@ -74,6 +78,56 @@ public interface ViewService {
      */
     String buildPath(PathContext context, String view, PathType type);
 
+    /**
+     * Builds URL paths to a view for a list of {@link PathContext}, e.g. for rendering
+     * a list of entities. The result is the same as invoking
+     * {@link #buildPath(PathContext, String, PathType)} for each {@link PathContext},
+     * but implementations may build the paths more efficiently.
+     *
+     * @param contexts
+     *            List of {@link PathContext} containing the data for each path
+     * @param view
+     *            name of the view to build the paths to
+     * @param type
+     *            {@link PathType} to be built
+     * @return List of URL paths, in the order of the contexts. An entry is {@code null}
+     *         if no view was found to be able to render the provided data.
+     */
+    default @Nonnull List<String> buildPaths(List<? extends PathContext> contexts, String view, PathType type) {
+        List<String> result = new ArrayList<>(contexts.size());
+        for (PathContext context : contexts) {
+            result.add(buildPath(context, view, type));
+        }
+        return result;
+    }
+
+    /**
+     * Builds an URL path to a view that is able to render the provided data, and
+     * writes it to the given {@link Appendable}. The result is the same as invoking
+     * {@link #buildPath(PathContext, String, PathType)}, but implementations may write
+     * the path without creating intermediate strings.
+     *
+     * @param context
+     *            {@link PathContext} containing all the data for the path
+     * @param view
+     *            name of the view to build a path to
+     * @param type
+     *            {@link PathType} to be built
+     * @param out
+     *            {@link Appendable} to write the path to, e.g. the response writer
+     * @return {@code true} if the path was written, {@code false} if no view was found
+     *         to be able to render the provided data. Nothing is written then.
+     */
+    default boolean buildPath(PathContext context, String view, PathType type, Appendable out)
+    throws IOException {
+        String path = buildPath(context, view, type);
+        if (path == null) {
+            return false;
+        }
+        out.append(path);
+        return true;
+    }
+
     /**
      * Analyzes the given path, and invokes a view handler for processing the request.
      *
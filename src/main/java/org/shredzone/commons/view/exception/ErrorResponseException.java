@@ -56,6 +56,21 @@ public class ErrorResponseException extends ViewException {
         this.responseCode = responseCode;
     }
 
+    /**
+     * Creates a new {@link ErrorResponseException}.
+     *
+     * @param responseCode
+     *            HTTP response code
+     * @param msg
+     *            HTTP response message
+     * @param writableStackTrace
+     *            {@code false} if the stack trace is not to be filled in
+     */
+    protected ErrorResponseException(int responseCode, String msg, boolean writableStackTrace) {
+        super(msg, null, writableStackTrace);
+        this.responseCode = responseCode;
+    }
+
     /**
      * @return HTTP response code
      */
@@ -50,4 +50,20 @@ public class PageNotFoundException extends ErrorResponseException {
         super(HttpServletResponse.SC_NOT_FOUND, msg);
     }
 
+    /**
+     * Creates a new {@link PageNotFoundException} with a message.
+     * <p>
+     * If no stack trace is written, the exception is very cheap to create. This is
+     * useful when a page is not found because no view matches the requested URL, as
+     * the stack trace would not give any useful information then.
+     *
+     * @param msg
+     *            Message
+     * @param writableStackTrace
+     *            {@code false} if the stack trace is not to be filled in
+     */
+    public PageNotFoundException(String msg, boolean writableStackTrace) {
+        super(HttpServletResponse.SC_NOT_FOUND, msg, writableStackTrace);
+    }
+
 }
@@ -70,4 +70,19 @@ public class ViewException extends Exception {
         super(msg, cause);
     }
 
+    /**
+     * Creates a new {@link ViewException}.
+     *
+     * @param msg
+     *            Message
+     * @param cause
+     *            Exception that caused this exception
+     * @param writableStackTrace
+     *            {@code false} if the stack trace is not to be filled in. This is
+     *            cheaper for exceptions that are frequently thrown for control flow.
+     */
+    protected ViewException(String msg, Throwable cause, boolean writableStackTrace) {
+        super(msg, cause, true, writableStackTrace);
+    }
+
 }
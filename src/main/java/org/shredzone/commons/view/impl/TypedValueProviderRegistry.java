@@ -0,0 +1,186 @@
+/*
+ * Shredzone Commons
+ *
+ * Copyright (C) 2012 Richard "Shred" Körber
+ *   http://commons.shredzone.org
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Library General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.shredzone.commons.view.impl;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintWriter;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+import javax.annotation.PostConstruct;
+import javax.annotation.Resource;
+import javax.annotation.concurrent.ThreadSafe;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpSession;
+
+import org.shredzone.commons.view.TypedValueProvider;
+import org.shredzone.commons.view.ViewContext;
+import org.shredzone.commons.view.exception.ViewContextException;
+import org.springframework.context.ApplicationContext;
+import org.springframework.stereotype.Component;
+
+/**
+ * Keeps all {@link TypedValueProvider} that are used by {@link ViewContextImpl}.
+ * <p>
+ * The built-in providers for the servlet request, session, locale, and the request and
+ * response streams are registered first. After that, all Spring beans implementing
+ * {@link TypedValueProvider} are registered. Further providers can be registered at
+ * runtime.
+ * <p>
+ * The provider for a requested type is only searched once, and then cached per type.
+ * The cache is owned by the registry, so it does not keep any classes of the web
+ * application alive after a redeployment.
+ *
+ * @author Richard "Shred" Körber
+ */
+@Component
+@ParametersAreNonnullByDefault
+@ThreadSafe
+public class TypedValueProviderRegistry {
+
+    @Resource private ApplicationContext appContext;
+
+    private final List<TypedValueProvider<?>> providers = new CopyOnWriteArrayList<>();
+    private volatile Map<Class<?>, Optional<TypedValueProvider<?>>> lookup = new ConcurrentHashMap<>();
+
+    /**
+     * Creates a new {@link TypedValueProviderRegistry} with the built-in providers.
+     */
+    public TypedValueProviderRegistry() {
+        register(new BuiltInProvider<>(HttpServletRequest.class, (context, req) -> req));
+        register(new BuiltInProvider<>(HttpSession.class, (context, req) -> req.getSession()));
+        register(new BuiltInProvider<>(Locale.class, (context, req) -> req.getLocale()));
+        register(new BuiltInProvider<>(OutputStream.class, (context, req) -> {
+            try {
+                return getResponse(context).getOutputStream();
+            } catch (IOException ex) {
+                throw new ViewContextException("Could not get OutputStream", ex);
+            }
+        }));
+        register(new BuiltInProvider<>(PrintWriter.class, (context, req) -> {
+            try {
+                return getResponse(context).getWriter();
+            } catch (IOException ex) {
+                throw new ViewContextException("Could not get Writer", ex);
+            }
+        }));
+        register(new BuiltInProvider<>(InputStream.class, (context, req) -> {
+            try {
+                return req.getInputStream();
+            } catch (IOException ex) {
+                throw new ViewContextException("Could not get InputStream", ex);
+            }
+        }));
+        register(new BuiltInProvider<>(BufferedReader.class, (context, req) -> {
+            try {
+                return req.getReader();
+            } catch (IOException ex) {
+                throw new ViewContextException("Could not get Reader", ex);
+            }
+        }));
+    }
+
+    @PostConstruct
+    protected void setup() {
+        appContext.getBeansOfType(TypedValueProvider.class).values().forEach(this::register);
+    }
+
+    /**
+     * Registers a {@link TypedValueProvider}. Providers that were registered earlier
+     * take precedence.
+     *
+     * @param provider
+     *            {@link TypedValueProvider} to register
+     */
+    public void register(TypedValueProvider<?> provider) {
+        providers.add(provider);
+        lookup = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Finds the {@link TypedValueProvider} for a requested type. It is the first
+     * registered provider with a type that is assignable to the requested type.
+     *
+     * @param type
+     *            Requested type
+     * @return {@link TypedValueProvider}, or {@code null} if there is no provider for
+     *         that type
+     */
+    public @Nullable TypedValueProvider<?> findProvider(Class<?> type) {
+        Optional<TypedValueProvider<?>> result = lookup.computeIfAbsent(type, it -> providers.stream()
+                .filter(provider -> it.isAssignableFrom(provider.getType()))
+                .findFirst());
+        return result.orElse(null);
+    }
+
+    /**
+     * Gets the {@link HttpServletResponse} of the current request.
+     */
+    private static HttpServletResponse getResponse(ViewContext context) throws ViewContextException {
+        HttpServletResponse resp = context.findValueOfType(HttpServletResponse.class, null);
+        if (resp == null) {
+            throw new ViewContextException("No value for type " + HttpServletResponse.class.getName());
+        }
+        return resp;
+    }
+
+    /**
+     * Function that provides a built-in value.
+     */
+    @FunctionalInterface
+    private interface ValueFunction<T> {
+        T apply(ViewContext context, HttpServletRequest req) throws ViewContextException;
+    }
+
+    /**
+     * A built-in {@link TypedValueProvider}.
+     */
+    private static final class BuiltInProvider<T> implements TypedValueProvider<T> {
+        private final Class<T> type;
+        private final ValueFunction<T> function;
+
+        private BuiltInProvider(Class<T> type, ValueFunction<T> function) {
+            this.type = type;
+            this.function = function;
+        }
+
+        @Override
+        public Class<T> getType() {
+            return type;
+        }
+
+        @Override
+        public T getValue(ViewContext context, HttpServletRequest req) throws ViewContextException {
+            return function.apply(context, req);
+        }
+    }
+
+}
@@ -20,31 +20,28 @@
 
 package org.shredzone.commons.view.impl;
 
-import java.io.BufferedReader;
-import java.io.IOException;
-import java.io.InputStream;
-import java.io.OutputStream;
-import java.io.PrintWriter;
 import java.util.Collections;
 import java.util.HashMap;
-import java.util.Locale;
 import java.util.Map;
 
 import javax.annotation.ParametersAreNonnullByDefault;
 import javax.annotation.PostConstruct;
 import javax.annotation.Resource;
 import javax.servlet.http.HttpServletRequest;
-import javax.servlet.http.HttpServletResponse;
-import javax.servlet.http.HttpSession;
 
+import org.shredzone.commons.view.TypedValueProvider;
 import org.shredzone.commons.view.ViewContext;
 import org.shredzone.commons.view.exception.ViewContextException;
+import org.shredzone.commons.view.manager.PathParts;
 import org.springframework.context.annotation.Scope;
 import org.springframework.stereotype.Component;
 
 /**
  * Default implementation of {@link ViewContext}.
  * <p>
+ * Values of a type are taken from the typed arguments first, and then from the
+ * {@link TypedValueProvider} found by the {@link TypedValueProviderRegistry}.
+ * <p>
  * This bean is request scoped.
  *
  * @author Richard "Shred" Körber
@@ -53,8 +50,10 @@ import org.springframework.stereotype.Component;
 @Scope("request")
 @ParametersAreNonnullByDefault
 public class ViewContextImpl implements ViewContext {
+    private static final Object NOT_FOUND = new Object();
 
     @Resource private HttpServletRequest req;
+    @Resource private TypedValueProviderRegistry typedValueProviderRegistry;
 
     private String requestServerUrl;
     private String requestServletName;
@@ -108,62 +107,36 @@ public class ViewContextImpl implements ViewContext {
     @Override
     @SuppressWarnings("unchecked")
     public <T> T getValueOfType(Class<T> type) throws ViewContextException {
-        if (typedValueMap.containsKey(type)) {
-            return (T) typedValueMap.get(type);
-        }
-
-        if (type.isAssignableFrom(HttpServletRequest.class)) {
-            return (T) req;
-        }
-
-        if (type.isAssignableFrom(HttpSession.class)) {
-            return (T) req.getSession();
-        }
-
-        if (type.isAssignableFrom(Locale.class)) {
-            return (T) req.getLocale();
-        }
-
-        if (type.isAssignableFrom(OutputStream.class)) {
-            try {
-                HttpServletResponse resp = getValueOfType(HttpServletResponse.class);
-                return (T) resp.getOutputStream();
-            } catch (IOException ex) {
-                throw new ViewContextException("Could not get OutputStream", ex);
-            }
-        }
-
-        if (type.isAssignableFrom(PrintWriter.class)) {
-            try {
-                HttpServletResponse resp = getValueOfType(HttpServletResponse.class);
-                return (T) resp.getWriter();
-            } catch (IOException ex) {
-                throw new ViewContextException("Could not get Writer", ex);
-            }
+        Object result = findValueOfType((Class<Object>) type, NOT_FOUND);
+        if (result == NOT_FOUND) {
+            throw new ViewContextException("No value for type " + type.getName());
         }
+        return (T) result;
+    }
 
-        if (type.isAssignableFrom(InputStream.class)) {
-            try {
-                return (T) req.getInputStream();
-            } catch (IOException ex) {
-                throw new ViewContextException("Could not get InputStream", ex);
-            }
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T findValueOfType(Class<T> type, T notFound) throws ViewContextException {
+        if (typedValueMap.containsKey(type)) {
+            return (T) typedValueMap.get(type);
         }
 
-        if (type.isAssignableFrom(BufferedReader.class)) {
-            try {
-                return (T) req.getReader();
-            } catch (IOException ex) {
-                throw new ViewContextException("Could not get Reader", ex);
-            }
+        TypedValueProvider<?> provider = typedValueProviderRegistry.findProvider(type);
+        if (provider != null) {
+            return (T) provider.getValue(this, req);
         }
 
-        throw new ViewContextException("No value for type " + type.getName());
+        return notFound;
     }
 
     @Override
     public void setPathParts(Map<String, String> pathParts) {
-        this.pathParts = Collections.unmodifiableMap(pathParts);
+        if (pathParts instanceof PathParts) {
+            // PathParts are read-only already
+            this.pathParts = pathParts;
+        } else {
+            this.pathParts = Collections.unmodifiableMap(pathParts);
+        }
     }
 
     @Override
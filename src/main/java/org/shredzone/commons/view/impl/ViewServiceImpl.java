@@ -21,11 +21,17 @@
 package org.shredzone.commons.view.impl;
 
 import java.io.IOException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.Map;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import javax.annotation.ParametersAreNonnullByDefault;
 import javax.annotation.PostConstruct;
 import javax.annotation.Resource;
@@ -37,15 +43,20 @@ import javax.servlet.http.HttpServletResponse;
 
 import org.shredzone.commons.view.PathContext;
 import org.shredzone.commons.view.PathType;
+import org.shredzone.commons.view.Signature;
 import org.shredzone.commons.view.ViewContext;
 import org.shredzone.commons.view.ViewInterceptor;
 import org.shredzone.commons.view.ViewService;
 import org.shredzone.commons.view.exception.ErrorResponseException;
 import org.shredzone.commons.view.exception.PageNotFoundException;
 import org.shredzone.commons.view.exception.ViewException;
+import org.shredzone.commons.view.manager.RouteTable;
 import org.shredzone.commons.view.manager.ViewInvoker;
 import org.shredzone.commons.view.manager.ViewManager;
+import org.shredzone.commons.view.manager.ViewMatch;
 import org.shredzone.commons.view.manager.ViewPattern;
+import org.shredzone.commons.view.util.BoundEvaluationContext;
+import org.shredzone.commons.view.util.LruCache;
 import org.shredzone.commons.view.util.ViewPathEvaluationContext;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -54,6 +65,8 @@ import org.springframework.core.convert.ConversionService;
 import org.springframework.expression.EvaluationContext;
 import org.springframework.expression.spel.support.StandardTypeConverter;
 import org.springframework.stereotype.Component;
+import org.springframework.util.ClassUtils;
+import org.springframework.util.ReflectionUtils;
 import org.springframework.util.StringUtils;
 
 /**
@@ -64,6 +77,8 @@ import org.springframework.util.StringUtils;
 @Component
 @ParametersAreNonnullByDefault
 public class ViewServiceImpl implements ViewService {
+    private static final int DEFAULT_MISS_CACHE_SIZE = 1000;
+
     private final Logger log = LoggerFactory.getLogger(this.getClass());
 
     @Resource private ViewManager viewManager;
@@ -72,12 +87,119 @@ public class ViewServiceImpl implements ViewService {
     @Resource private ApplicationContext appContext;
 
     private Collection<ViewInterceptor> interceptors;
+    private EvaluationContext templateContext;
+    private boolean customEvaluationContext;
+    private volatile LruCache<String, ViewMatch> pathCache;
+    private volatile LruCache<String, Boolean> missCache = new LruCache<>(DEFAULT_MISS_CACHE_SIZE);
+    private volatile LruCache<LinkKey, String> linkCache;
+    private final AtomicLong cachedRevision = new AtomicLong();
 
     @PostConstruct
     protected void setup() {
         // Cannot immediately inject to the collection, as it fails when no
         // ViewInterceptor bean was found.
         interceptors = appContext.getBeansOfType(ViewInterceptor.class).values();
+        templateContext = createTemplateContext();
+
+        // Subclasses may rely on the result of createEvaluationContext()
+        Method method = ReflectionUtils.findMethod(ClassUtils.getUserClass(this),
+                "createEvaluationContext", PathContext.class);
+        customEvaluationContext = method != null && method.getDeclaringClass() != ViewServiceImpl.class;
+    }
+
+    /**
+     * Sets the size of the path cache. The path cache remembers the {@link ViewMatch} of
+     * the most recently requested paths, so frequently requested paths do not need to
+     * be resolved again. It is disabled by default.
+     *
+     * @param size
+     *            Maximum number of cached paths, or 0 to disable the path cache
+     */
+    public void setPathCacheSize(int size) {
+        pathCache = size > 0 ? new LruCache<>(size) : null;
+    }
+
+    /**
+     * Returns the path cache, e.g. for reading its hit and miss counters.
+     *
+     * @return Path cache, or {@code null} if the path cache is disabled
+     */
+    public @Nullable LruCache<String, ViewMatch> getPathCache() {
+        return pathCache;
+    }
+
+    /**
+     * Sets the size of the miss cache. The miss cache remembers the most recently
+     * requested paths that did not match any view, so repeated requests to unknown paths
+     * (e.g. by vulnerability scanners) are rejected quickly. The default size is 1000
+     * entries.
+     *
+     * @param size
+     *            Maximum number of cached paths, or 0 to disable the miss cache
+     */
+    public void setMissCacheSize(int size) {
+        missCache = size > 0 ? new LruCache<>(size) : null;
+    }
+
+    /**
+     * Returns the miss cache, e.g. for reading its hit and miss counters.
+     *
+     * @return Miss cache, or {@code null} if the miss cache is disabled
+     */
+    public @Nullable LruCache<String, Boolean> getMissCache() {
+        return missCache;
+    }
+
+    /**
+     * Sets the size of the link cache. The link cache remembers the view relative paths
+     * that were built by {@link #buildPath(PathContext, String, PathType)}, so links to
+     * the same entity do not need to be evaluated again. It is disabled by default.
+     * <p>
+     * A path is only cached if the {@link PathContext} offers a cache key (see
+     * {@link PathContext#getCacheKey()}), or if its signature only consists of
+     * variables. In the latter case, the variable values are used as cache key, so they
+     * must implement {@link Object#equals(Object)} and {@link Object#hashCode()}.
+     *
+     * @param size
+     *            Maximum number of cached links, or 0 to disable the link cache
+     */
+    public void setLinkCacheSize(int size) {
+        linkCache = size > 0 ? new LruCache<>(size) : null;
+    }
+
+    /**
+     * Returns the link cache, e.g. for reading its hit rate.
+     *
+     * @return Link cache, or {@code null} if the link cache is disabled
+     */
+    public @Nullable LruCache<?, String> getLinkCache() {
+        return linkCache;
+    }
+
+    /**
+     * Removes all links from the link cache.
+     */
+    public void invalidateLinks() {
+        LruCache<LinkKey, String> cache = linkCache;
+        if (cache != null) {
+            cache.clear();
+        }
+    }
+
+    /**
+     * Removes all links with the given cache key from the link cache. This method
+     * should be invoked when the entity behind the cache key was changed.
+     *
+     * @param cacheKey
+     *            Cache key, as returned by {@link PathContext#getCacheKey()}
+     * @return Number of links that were removed
+     */
+    public int invalidateLinks(Object cacheKey) {
+        LruCache<LinkKey, String> cache = linkCache;
+        if (cache == null) {
+            return 0;
+        }
+        return cache.removeIf((key, path) -> cacheKey.equals(key.cacheKey));
     }
 
     @Override
@@ -153,55 +275,126 @@ public class ViewServiceImpl implements ViewService {
     public String invokeView(String path) throws ViewException {
         ViewContext context = getViewContext();
 
-        for (ViewPattern pattern : viewManager.getViewPatterns()) {
-            Map<String, String> pathParts = pattern.resolve(path);
-            if (pathParts != null) { // matched!
-                context.setPathParts(pathParts);
-                context.setQualifier(pattern.getQualifier());
+        ViewMatch match = resolvePath(path);
+        if (match == null) {
+            // No stack trace, as this might be frequently triggered by bots
+            throw new PageNotFoundException("No page found at " + path, false);
+        }
 
-                ViewInvoker invoker = pattern.getInvoker();
+        ViewPattern pattern = match.getPattern();
+        context.setPathParts(match.getPathParts());
+        context.setQualifier(pattern.getQualifier());
 
-                interceptors.forEach(interceptor ->
-                    interceptor.onViewHandlerInvocation(context, invoker.getBean(), invoker.getMethod())
-                );
+        ViewInvoker invoker = pattern.getInvoker();
 
-                return pattern.getInvoker().invoke(context);
-            }
-        }
+        interceptors.forEach(interceptor ->
+            interceptor.onViewHandlerInvocation(context, invoker.getBean(), invoker.getMethod())
+        );
 
-        throw new PageNotFoundException("No page found at " + path);
+        return invoker.invoke(context);
     }
 
     @Override
     public String buildPath(PathContext data, String view, PathType type) {
-        Collection<ViewPattern> vpList;
+        RouteTable table = viewManager.getRouteTable();
+        LruCache<LinkKey, String> cache = linkCache;
 
-        if (StringUtils.hasText(view)) {
-            // The given view is required...
-            vpList = viewManager.getViewPatternsForView(view, data.getQualifier());
-            if (vpList.isEmpty()) {
-                throw new IllegalArgumentException("Unknown view " + view);
+        LinkKey key = cache != null ? LinkKey.of(data, view, table) : null;
+        String path = key != null ? cache.get(key) : null;
+        if (path == null) {
+            path = evaluatePath(data, findViewPatterns(data, view, table));
+            if (key != null && path != null) {
+                cache.put(key, path);
             }
+        }
 
-        } else {
-            // Find a view by the signature...
-            ViewPattern pattern = viewManager.getViewPatternForSignature(data.getSignature(), data.getQualifier());
-            if (pattern == null) {
-                throw new IllegalArgumentException("No view for signature: " + data.getSignature());
+        return path != null ? processPath(path, type) : null;
+    }
+
+    @Override
+    public boolean buildPath(PathContext data, String view, PathType type, Appendable out)
+    throws IOException {
+        RouteTable table = viewManager.getRouteTable();
+        LruCache<LinkKey, String> cache = linkCache;
+
+        LinkKey key = cache != null ? LinkKey.of(data, view, table) : null;
+        if (key != null) {
+            // Cacheable links are evaluated to a string, so they can be reused
+            String path = cache.get(key);
+            if (path == null) {
+                path = evaluatePath(data, findViewPatterns(data, view, table));
+                if (path == null) {
+                    return false;
+                }
+                cache.put(key, path);
             }
-            vpList = Collections.singletonList(pattern);
+            out.append(getPathPrefix(type)).append(path);
+            return true;
         }
 
-        EvaluationContext evContext = createEvaluationContext(data);
+        Signature signature = data.getSignature();
+        EvaluationContext evContext = null;
+        String prefix = null;
 
-        for (ViewPattern pattern : vpList) {
-            String path = pattern.evaluate(evContext, data);
-            if (path != null) {
-                return processPath(path, type);
+        for (ViewPattern pattern : findViewPatterns(data, view, table)) {
+            if (evContext == null) {
+                evContext = getEvaluationContext(data);
+                prefix = getPathPrefix(type);
+            }
+            if (!pattern.isSatisfiedBy(signature, evContext)) {
+                continue;
+            }
+            if (pattern.evaluate(evContext, data, prefix, out)) {
+                return true;
             }
         }
 
-        return null;
+        return false;
+    }
+
+    @Override
+    public List<String> buildPaths(List<? extends PathContext> contexts, String view, PathType type) {
+        List<String> result = new ArrayList<>(contexts.size());
+        if (contexts.isEmpty()) {
+            return result;
+        }
+
+        RouteTable table = viewManager.getRouteTable();
+        LruCache<LinkKey, String> cache = linkCache;
+        String prefix = getPathPrefix(type);
+
+        // Contexts of a list usually share the same qualifier and signature, so the
+        // view patterns are only looked up again if they change.
+        String lastQualifier = null;
+        Signature lastSignature = null;
+        Collection<ViewPattern> vpList = null;
+
+        for (PathContext data : contexts) {
+            LinkKey key = cache != null ? LinkKey.of(data, view, table) : null;
+            String cached = key != null ? cache.get(key) : null;
+            if (cached != null) {
+                result.add(prefix.concat(cached));
+                continue;
+            }
+
+            String qualifier = data.getQualifier();
+            Signature signature = StringUtils.hasText(view) ? null : data.getSignature();
+            if (vpList == null
+                    || !Objects.equals(qualifier, lastQualifier)
+                    || !Objects.equals(signature, lastSignature)) {
+                vpList = findViewPatterns(data, view, table);
+                lastQualifier = qualifier;
+                lastSignature = signature;
+            }
+
+            String path = evaluatePath(data, vpList);
+            if (key != null && path != null) {
+                cache.put(key, path);
+            }
+            result.add(path != null ? prefix.concat(path) : null);
+        }
+
+        return result;
     }
 
     @Override
@@ -221,6 +414,10 @@ public class ViewServiceImpl implements ViewService {
     /**
      * Creates an {@link EvaluationContext} to be used for evaluation in this view
      * service. The default implementation creates a {@link ViewPathEvaluationContext}.
+     * <p>
+     * This method is only invoked if it is overridden. Otherwise a lightweight context
+     * is used, which binds the {@link PathContext} to the shared template context, see
+     * {@link #createTemplateContext()}.
      *
      * @param context
      *            {@link PathContext} to be used as root object
@@ -232,6 +429,165 @@ public class ViewServiceImpl implements ViewService {
         return evContext;
     }
 
+    /**
+     * Gets the {@link EvaluationContext} for building a path from the given
+     * {@link PathContext}.
+     *
+     * @param context
+     *            {@link PathContext} to be used as root object
+     * @return {@link EvaluationContext} to be used for evaluation
+     */
+    private EvaluationContext getEvaluationContext(PathContext context) {
+        if (customEvaluationContext) {
+            return createEvaluationContext(context);
+        }
+        return new BoundEvaluationContext(templateContext, context);
+    }
+
+    /**
+     * Creates the template {@link EvaluationContext} that is shared by all evaluations
+     * of this view service, unless {@link #createEvaluationContext(PathContext)} is
+     * overridden. It is created once on setup, and must not be changed
+     * afterwards. The default implementation creates a {@link ViewPathEvaluationContext}
+     * that uses the {@link ConversionService}.
+     *
+     * @return Template {@link EvaluationContext}
+     */
+    protected @Nonnull EvaluationContext createTemplateContext() {
+        ViewPathEvaluationContext evContext = new ViewPathEvaluationContext();
+        evContext.setTypeConverter(new StandardTypeConverter(conversionService));
+
+        // Initialize all lazy defaults now, so the context is only read afterwards
+        evContext.getPropertyAccessors();
+        evContext.getConstructorResolvers();
+        evContext.getMethodResolvers();
+        evContext.getTypeLocator();
+
+        return evContext;
+    }
+
+    /**
+     * Resolves the given path. The path cache and the miss cache are used if enabled.
+     * <p>
+     * The caches only contain results of the most recent {@link RouteTable}. If the
+     * routes have changed, the caches are cleared first.
+     *
+     * @param path
+     *            the requested path
+     * @return {@link ViewMatch} of that path, or {@code null} if no view matches
+     */
+    private ViewMatch resolvePath(String path) {
+        RouteTable table = viewManager.getRouteTable();
+        LruCache<String, ViewMatch> cache = pathCache;
+        LruCache<String, Boolean> misses = missCache;
+
+        long revision = table.getRevision();
+        long previous = cachedRevision.getAndAccumulate(revision, Math::max);
+        if (previous > revision) {
+            // Routes have changed meanwhile, do not touch the caches
+            return table.resolve(path);
+        }
+        if (previous < revision) {
+            // The revision was raised first, so results of the previous table that are
+            // stored meanwhile are either cleared here, or removed by the checks below.
+            if (cache != null) {
+                cache.clear();
+            }
+            if (misses != null) {
+                misses.clear();
+            }
+        }
+
+        ViewMatch match = cache != null ? cache.get(path) : null;
+        if (match != null) {
+            return match;
+        }
+
+        if (misses != null && misses.get(path) != null) {
+            return null;
+        }
+
+        match = table.resolve(path);
+        if (match != null) {
+            if (cache != null) {
+                cache.put(path, match);
+                if (cachedRevision.get() != revision) {
+                    cache.remove(path);
+                }
+            }
+        } else if (misses != null) {
+            misses.put(path, Boolean.TRUE);
+            if (cachedRevision.get() != revision) {
+                misses.remove(path);
+            }
+        }
+        return match;
+    }
+
+    /**
+     * Finds the {@link ViewPattern} candidates for building a path.
+     *
+     * @param data
+     *            {@link PathContext} containing the data for the path
+     * @param view
+     *            name of the view, or empty to find a view by the signature of the
+     *            {@link PathContext}
+     * @param table
+     *            {@link RouteTable} to be used
+     * @return Collection of {@link ViewPattern} candidates, in the order of precedence
+     */
+    private Collection<ViewPattern> findViewPatterns(PathContext data, String view, RouteTable table) {
+        if (StringUtils.hasText(view)) {
+            // The given view is required...
+            Collection<ViewPattern> vpList = table.getViewPatternsForView(view, data.getQualifier());
+            if (vpList.isEmpty()) {
+                throw new IllegalArgumentException("Unknown view " + view);
+            }
+            return vpList;
+
+        } else {
+            // Find a view by the signature...
+            ViewPattern pattern = table.getViewPatternForSignature(data.getSignature(), data.getQualifier());
+            if (pattern == null) {
+                throw new IllegalArgumentException("No view for signature: " + data.getSignature());
+            }
+            return Collections.singletonList(pattern);
+        }
+    }
+
+    /**
+     * Evaluates the view relative path of the first {@link ViewPattern} candidate that
+     * is able to render the provided data. Candidates that require variables that are
+     * neither set in the {@link PathContext} nor provided by the evaluation context are
+     * skipped without evaluation.
+     *
+     * @param data
+     *            {@link PathContext} containing the data for the path
+     * @param vpList
+     *            {@link ViewPattern} candidates
+     * @return View relative path, or {@code null} if no candidate was able to render the
+     *         data
+     */
+    private String evaluatePath(PathContext data, Collection<ViewPattern> vpList) {
+        Signature signature = data.getSignature();
+        EvaluationContext evContext = null;
+
+        for (ViewPattern pattern : vpList) {
+            if (evContext == null) {
+                evContext = getEvaluationContext(data);
+            }
+            if (!pattern.isSatisfiedBy(signature, evContext)) {
+                continue;
+            }
+            String path = pattern.evaluate(evContext, data);
+            if (path != null) {
+                return path;
+            }
+        }
+
+        return null;
+    }
+
     /**
      * Processes a path, prefixing the servlet name and making it absolute if requested.
      *
@@ -245,18 +601,93 @@ public class ViewServiceImpl implements ViewService {
         if (type == PathType.VIEW) {
             return path;
         }
+        return getPathPrefix(type).concat(path);
+    }
 
+    /**
+     * Returns the prefix of paths of the given {@link PathType}.
+     *
+     * @param type
+     *            {@link PathType} to be returned
+     * @return Prefix containing the servlet name, and the server URL if an absolute path
+     *         was requested. Empty for view relative paths.
+     */
+    private @Nonnull String getPathPrefix(PathType type) {
+        if (type == PathType.VIEW) {
+            return "";
+        }
+
+        ViewContext context = getViewContext();
         StringBuilder sb = new StringBuilder();
 
         if (type == PathType.ABSOLUTE) {
-            sb.append(getViewContext().getRequestServerUrl());
+            sb.append(context.getRequestServerUrl());
         }
 
         sb.append(servletContext.getContextPath());
-        sb.append(getViewContext().getRequestServletName());
-        sb.append(path);
+        sb.append(context.getRequestServletName());
 
         return sb.toString();
     }
 
+    /**
+     * Key of the link cache.
+     */
+    private static final class LinkKey {
+        private final String view;
+        private final String qualifier;
+        private final Signature signature;
+        private final Object cacheKey;
+        private final long revision;
+        private final int hash;
+
+        private LinkKey(@Nullable String view, @Nullable String qualifier, Signature signature,
+                Object cacheKey, long revision) {
+            this.view = view;
+            this.qualifier = qualifier;
+            this.signature = signature;
+            this.cacheKey = cacheKey;
+            this.revision = revision;
+            this.hash = Objects.hash(view, qualifier, signature, cacheKey, revision);
+        }
+
+        /**
+         * Creates a {@link LinkKey} for the given {@link PathContext}.
+         *
+         * @return {@link LinkKey}, or {@code null} if paths of this {@link PathContext}
+         *         cannot be cached
+         */
+        private static @Nullable LinkKey of(PathContext data, @Nullable String view, RouteTable table) {
+            Signature signature = data.getSignature();
+            Object cacheKey = data.getCacheKey();
+            if (cacheKey == null) {
+                if (!signature.isVariablesOnly()) {
+                    return null;
+                }
+                cacheKey = new HashMap<>(data.getVariables());
+            }
+
+            return new LinkKey(StringUtils.hasText(view) ? view : null, data.getQualifier(),
+                    signature, cacheKey, table.getRevision());
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof LinkKey)) {
+                return false;
+            }
+            LinkKey other = (LinkKey) obj;
+            return revision == other.revision
+                    && signature.equals(other.signature)
+                    && Objects.equals(view, other.view)
+                    && Objects.equals(qualifier, other.qualifier)
+                    && cacheKey.equals(other.cacheKey);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
 }
@@ -0,0 +1,117 @@
+/*
+ * Shredzone Commons
+ *
+ * Copyright (C) 2012 Richard "Shred" Körber
+ *   http://commons.shredzone.org
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Library General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.shredzone.commons.view.manager;
+
+import java.util.Collections;
+import java.util.List;
+
+import javax.annotation.Nonnull;
+import javax.annotation.ParametersAreNonnullByDefault;
+import javax.annotation.concurrent.Immutable;
+
+/**
+ * A snapshot of the statistics of a bucket of {@link ViewPattern} that share the same
+ * segment structure, and thus have to be tried in sequence when resolving a URL.
+ * <p>
+ * The patterns are listed in their current order of trial, which follows the number of
+ * hits as far as the order of precedence permits.
+ * <p>
+ * {@link BucketStatistics} are immutable.
+ *
+ * @author Richard "Shred" Körber
+ */
+@ParametersAreNonnullByDefault
+@Immutable
+public class BucketStatistics {
+
+    private final List<ViewPattern> patterns;
+    private final long[] hits;
+    private final long lookups;
+    private final long reorders;
+
+    /**
+     * Creates a new {@link BucketStatistics}.
+     *
+     * @param patterns
+     *            {@link ViewPattern} of the bucket, in the order of trial
+     * @param hits
+     *            Number of hits of each pattern, in the same order
+     * @param lookups
+     *            Number of lookups in this bucket
+     * @param reorders
+     *            Number of times the order of trial was changed
+     */
+    BucketStatistics(List<ViewPattern> patterns, long[] hits, long lookups, long reorders) {
+        this.patterns = Collections.unmodifiableList(patterns);
+        this.hits = hits;
+        this.lookups = lookups;
+        this.reorders = reorders;
+    }
+
+    /**
+     * Gets the {@link ViewPattern} of this bucket, in the current order of trial.
+     *
+     * @return List of {@link ViewPattern}
+     */
+    public @Nonnull List<ViewPattern> getPatterns() {
+        return patterns;
+    }
+
+    /**
+     * Gets the number of hits of a pattern.
+     *
+     * @param index
+     *            Index of the pattern in {@link #getPatterns()}
+     * @return Number of hits
+     */
+    public long getHits(int index) {
+        return hits[index];
+    }
+
+    /**
+     * Gets the number of lookups in this bucket, including lookups without a match.
+     *
+     * @return Number of lookups
+     */
+    public long getLookups() {
+        return lookups;
+    }
+
+    /**
+     * Gets the number of times the order of trial was changed.
+     *
+     * @return Number of reorders
+     */
+    public long getReorders() {
+        return reorders;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("BucketStatistics[lookups=").append(lookups)
+                .append(", reorders=").append(reorders);
+        for (int ix = 0; ix < patterns.size(); ix++) {
+            sb.append(", ").append(patterns.get(ix).getPattern()).append('=').append(hits[ix]);
+        }
+        return sb.append(']').toString();
+    }
+
+}
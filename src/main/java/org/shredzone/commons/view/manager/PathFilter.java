@@ -0,0 +1,187 @@
+/*
+ * Shredzone Commons
+ *
+ * Copyright (C) 2012 Richard "Shred" Körber
+ *   http://commons.shredzone.org
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Library General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.shredzone.commons.view.manager;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.TreeSet;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+import javax.annotation.concurrent.Immutable;
+
+/**
+ * A quick filter that rejects URL paths that cannot be matched by any
+ * {@link ViewPattern}, before any pattern is matched against them.
+ * <p>
+ * A path is rejected if it is shorter than the constant parts of any pattern, if it is
+ * longer than the longest pattern (given that all patterns are constant), if no
+ * pattern has the same number of segments, or if no pattern starts with the same
+ * leading segment.
+ * <p>
+ * {@link PathFilter PathFilters} are immutable.
+ *
+ * @author Richard "Shred" Körber
+ */
+@ParametersAreNonnullByDefault
+@Immutable
+class PathFilter {
+
+    private final int minLength;
+    private final int maxLength;
+    private final boolean[] segmentCounts;
+    private final String[] heads;
+
+    /**
+     * Creates a new {@link PathFilter}.
+     *
+     * @param patterns
+     *            All {@link ViewPattern} that are to be accepted by this filter
+     */
+    public PathFilter(Collection<ViewPattern> patterns) {
+        int min = Integer.MAX_VALUE;
+        int max = 0;
+        int maxSegments = 0;
+        boolean anyHead = false;
+        TreeSet<String> headSet = new TreeSet<>();
+
+        for (ViewPattern vp : patterns) {
+            String[] segments = vp.getSegments();
+            int length = segments.length - 1;
+            for (String segment : segments) {
+                if (segment != null) {
+                    length += segment.length();
+                }
+            }
+
+            // Lower bound only counts the constant segments, but that's fine here
+            min = Math.min(min, length);
+            max = vp.getParameters().isEmpty() ? Math.max(max, length) : Integer.MAX_VALUE;
+            maxSegments = Math.max(maxSegments, segments.length);
+
+            String head = segments[headIndex(segments)];
+            if (head != null) {
+                headSet.add(head);
+            } else {
+                anyHead = true;
+            }
+        }
+
+        this.minLength = patterns.isEmpty() ? Integer.MAX_VALUE : min;
+        this.maxLength = max;
+
+        this.segmentCounts = new boolean[maxSegments + 1];
+        for (ViewPattern vp : patterns) {
+            segmentCounts[vp.getSegments().length] = true;
+        }
+
+        this.heads = anyHead ? null : headSet.toArray(new String[headSet.size()]);
+    }
+
+    /**
+     * Checks if the given path could be matched by a {@link ViewPattern}.
+     *
+     * @param path
+     *            the requested URL path
+     * @return {@code false} if no {@link ViewPattern} is able to match that path,
+     *         {@code true} if there might be one
+     */
+    public boolean accepts(String path) {
+        int length = path.length();
+        if (length < minLength || length > maxLength) {
+            return false;
+        }
+
+        int segments = 1;
+        for (int ix = 0; ix < length; ix++) {
+            if (path.charAt(ix) == '/' && ++segments >= segmentCounts.length) {
+                return false;
+            }
+        }
+        if (!segmentCounts[segments]) {
+            return false;
+        }
+
+        if (heads != null) {
+            int start = 0;
+            if (segments > 1 && path.charAt(0) == '/') {
+                start = 1;
+            }
+            int end = path.indexOf('/', start);
+            if (end < 0) {
+                end = length;
+            }
+            return findHead(path, start, end);
+        }
+
+        return true;
+    }
+
+    /**
+     * Returns the index of the leading segment. If a pattern starts with a '/', the
+     * empty first segment is skipped.
+     */
+    private static int headIndex(String[] segments) {
+        return segments.length > 1 && "".equals(segments[0]) ? 1 : 0;
+    }
+
+    /**
+     * Checks if the given part of the path is one of the known leading segments. The
+     * sorted array of segments is binary searched, without creating a substring.
+     */
+    private boolean findHead(String path, int start, int end) {
+        int low = 0;
+        int high = heads.length - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int cmp = compare(heads[mid], path, start, end);
+            if (cmp < 0) {
+                low = mid + 1;
+            } else if (cmp > 0) {
+                high = mid - 1;
+            } else {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Compares a string with a part of another string, in the same way as
+     * {@link String#compareTo(String)}.
+     */
+    private static int compare(String str, String path, int start, int end) {
+        int len = Math.min(str.length(), end - start);
+        for (int ix = 0; ix < len; ix++) {
+            int cmp = str.charAt(ix) - path.charAt(start + ix);
+            if (cmp != 0) {
+                return cmp;
+            }
+        }
+        return str.length() - (end - start);
+    }
+
+    @Override
+    public String toString() {
+        return "PathFilter[length=" + minLength + ".." + maxLength
+                + ", heads=" + (heads != null ? Arrays.toString(heads) : "*") + "]";
+    }
+
+}
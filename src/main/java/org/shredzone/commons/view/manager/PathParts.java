@@ -0,0 +1,170 @@
+/*
+ * Shredzone Commons
+ *
+ * Copyright (C) 2012 Richard "Shred" Körber
+ *   http://commons.shredzone.org
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Library General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.shredzone.commons.view.manager;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+import javax.annotation.concurrent.ThreadSafe;
+
+import org.shredzone.commons.view.util.PathUtils;
+
+/**
+ * A read-only map of the path parts of a resolved URL.
+ * <p>
+ * The map does not copy the path parts on creation. Instead it keeps the start and end
+ * offsets of each placeholder in the requested URL. A path part is only extracted and
+ * decoded when it is read for the first time. The only exception are path parts with
+ * percent escapes that need to be decoded. They are decoded right away, so a malformed
+ * escape is still rejected when the URL is resolved.
+ * <p>
+ * Path parts are only URL decoded if the placeholder expression used
+ * {@code #encode()}. Other path parts are returned as they are.
+ * <p>
+ * {@link PathParts} are thread safe.
+ *
+ * @author Richard "Shred" Körber
+ */
+@ParametersAreNonnullByDefault
+@ThreadSafe
+public final class PathParts extends AbstractMap<String, String> {
+
+    private final String path;
+    private final String[] keys;
+    private final int[] spans;
+    private final boolean[] decode;
+    private final String[] values;
+
+    /**
+     * Creates a new {@link PathParts} instance.
+     *
+     * @param path
+     *            the requested URL
+     * @param keys
+     *            Placeholder names. Must not contain duplicates.
+     * @param spans
+     *            Start and end offset of each placeholder value in the URL, two entries
+     *            per placeholder name
+     * @param decode
+     *            For each placeholder name, {@code true} if the value is to be URL
+     *            decoded
+     * @throws IllegalArgumentException
+     *             if a path part to be decoded contains a malformed escape
+     */
+    PathParts(String path, String[] keys, int[] spans, boolean[] decode) {
+        this.path = path;
+        this.keys = keys;
+        this.spans = spans;
+        this.decode = decode;
+        this.values = new String[keys.length];
+
+        for (int ix = 0; ix < keys.length; ix++) {
+            int start = spans[ix * 2];
+            int end = spans[ix * 2 + 1];
+            int escape = path.indexOf('%', start);
+            if (decode[ix] && escape >= 0 && escape < end) {
+                values[ix] = PathUtils.decode(path.substring(start, end));
+            }
+        }
+    }
+
+    @Override
+    public int size() {
+        return keys.length;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return indexOf(key) >= 0;
+    }
+
+    @Override
+    public String get(Object key) {
+        int ix = indexOf(key);
+        return ix >= 0 ? value(ix) : null;
+    }
+
+    @Override
+    public Set<Entry<String, String>> entrySet() {
+        return new AbstractSet<Entry<String, String>>() {
+            @Override
+            public int size() {
+                return keys.length;
+            }
+
+            @Override
+            public Iterator<Entry<String, String>> iterator() {
+                return new Iterator<Entry<String, String>>() {
+                    private int ix = 0;
+
+                    @Override
+                    public boolean hasNext() {
+                        return ix < keys.length;
+                    }
+
+                    @Override
+                    public Entry<String, String> next() {
+                        if (ix >= keys.length) {
+                            throw new NoSuchElementException();
+                        }
+                        Entry<String, String> entry = new SimpleImmutableEntry<>(keys[ix], value(ix));
+                        ix++;
+                        return entry;
+                    }
+                };
+            }
+        };
+    }
+
+    /**
+     * Finds the index of the given placeholder name.
+     */
+    private int indexOf(Object key) {
+        for (int ix = 0; ix < keys.length; ix++) {
+            if (keys[ix].equals(key)) {
+                return ix;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the value at the given index. It is extracted from the URL on first
+     * access. Concurrent first accesses may extract the value more than once, but
+     * always give an equal result.
+     */
+    private String value(int ix) {
+        String result = values[ix];
+        if (result == null) {
+            result = path.substring(spans[ix * 2], spans[ix * 2 + 1]);
+            if (decode[ix]) {
+                result = PathUtils.decode(result);
+            }
+            values[ix] = result;
+        }
+        return result;
+    }
+
+}
@@ -0,0 +1,129 @@
+/*
+ * Shredzone Commons
+ *
+ * Copyright (C) 2012 Richard "Shred" Körber
+ *   http://commons.shredzone.org
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Library General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.shredzone.commons.view.manager;
+
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+import javax.annotation.concurrent.ThreadSafe;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.expression.EvaluationContext;
+import org.springframework.expression.spel.SpelEvaluationException;
+import org.springframework.expression.spel.SpelMessage;
+import org.springframework.expression.spel.standard.SpelExpression;
+
+/**
+ * The SpEL expression of a single placeholder of a {@link ViewPattern}.
+ * <p>
+ * The expression is interpreted first. After it was successfully interpreted, it is
+ * compiled to bytecode, so further evaluations are faster. If the compiled code fails
+ * later, e.g. because the types of the evaluated values have changed, it falls back to
+ * interpretation for good.
+ *
+ * @author Richard "Shred" Körber
+ */
+@ParametersAreNonnullByDefault
+@ThreadSafe
+class PlaceholderExpression {
+    private static final Logger LOG = LoggerFactory.getLogger(PlaceholderExpression.class);
+    private static final int MAX_COMPILE_ATTEMPTS = 3;
+
+    private final SpelExpression expression;
+    private final LongAdder compiledCount = new LongAdder();
+    private final LongAdder interpretedCount = new LongAdder();
+    private volatile boolean compiled = false;
+    private volatile int attempts = 0;
+
+    /**
+     * Creates a new {@link PlaceholderExpression}.
+     *
+     * @param expression
+     *            Parsed {@link SpelExpression} of the placeholder
+     */
+    public PlaceholderExpression(SpelExpression expression) {
+        this.expression = expression;
+    }
+
+    /**
+     * Gets the {@link SpelExpression} of the placeholder.
+     */
+    public SpelExpression getExpression() {
+        return expression;
+    }
+
+    /**
+     * Evaluates the placeholder.
+     *
+     * @param context
+     *            {@link EvaluationContext} to be used
+     * @param root
+     *            Root object
+     * @param compile
+     *            {@code true} if the expression should be compiled
+     * @return Evaluated value, or {@code null}
+     */
+    public String getValue(EvaluationContext context, Object root, boolean compile) {
+        if (compiled) {
+            try {
+                String value = expression.getValue(context, root, String.class);
+                compiledCount.increment();
+                return value;
+            } catch (SpelEvaluationException ex) {
+                if (ex.getMessageCode() != SpelMessage.EXCEPTION_RUNNING_COMPILED_EXPRESSION) {
+                    throw ex;
+                }
+                LOG.debug("Compiled expression '{}' failed, reverting to interpreter",
+                        expression.getExpressionString(), ex);
+                attempts = MAX_COMPILE_ATTEMPTS;
+                compiled = false;
+                expression.revertToInterpreted();
+            }
+        }
+
+        String value = expression.getValue(context, root, String.class);
+        interpretedCount.increment();
+
+        // Racy by intention. At worst, compilation is attempted once more.
+        if (compile && value != null && attempts < MAX_COMPILE_ATTEMPTS) {
+            attempts++;
+            compiled = expression.compileExpression();
+        }
+
+        return value;
+    }
+
+    /**
+     * Returns the number of evaluations by compiled code.
+     */
+    public long getCompiledCount() {
+        return compiledCount.sum();
+    }
+
+    /**
+     * Returns the number of interpreted evaluations.
+     */
+    public long getInterpretedCount() {
+        return interpretedCount.sum();
+    }
+
+}
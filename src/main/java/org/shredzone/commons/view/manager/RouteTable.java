@@ -0,0 +1,235 @@
+/*
+ * Shredzone Commons
+ *
+ * Copyright (C) 2012 Richard "Shred" Körber
+ *   http://commons.shredzone.org
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Library General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.shredzone.commons.view.manager;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+import javax.annotation.concurrent.Immutable;
+
+import org.shredzone.commons.view.Signature;
+
+/**
+ * A snapshot of all known {@link ViewPattern}, and the indexes that are required for
+ * resolving URLs and building paths.
+ * <p>
+ * {@link RouteTable RouteTables} are immutable. If view handlers are registered or
+ * unregistered at runtime, a new {@link RouteTable} is built and replaces the previous
+ * one. This way, URLs can be resolved without locking, while the routes are changed.
+ *
+ * @author Richard "Shred" Körber
+ */
+@ParametersAreNonnullByDefault
+@Immutable
+public final class RouteTable {
+    private static final AtomicLong REVISIONS = new AtomicLong();
+
+    private final long revision = REVISIONS.incrementAndGet();
+
+    private final List<ViewPattern> patternOrder;
+    private final Map<String, Map<String, List<ViewPattern>>> patternMap;
+    private final Map<String, ViewPattern[]> signatureMap;
+    private final ViewPatternTrie patternTrie;
+    private final Map<String, ViewMatch> literalMap;
+    private final PathFilter pathFilter;
+
+    /**
+     * Creates a new {@link RouteTable}.
+     *
+     * @param patterns
+     *            All {@link ViewPattern}, in the order they were found
+     * @param regExMatching
+     *            {@code true} to match URLs by the regular expressions of the patterns
+     * @throws IllegalStateException
+     *             if a signature is defined twice for the same qualifier
+     */
+    RouteTable(Collection<ViewPattern> patterns, boolean regExMatching) {
+        Map<String, Map<String, List<ViewPattern>>> pm = new HashMap<>();
+        Map<String, ViewPattern[]> sm = new HashMap<>();
+
+        for (ViewPattern vp : patterns) {
+            pm.computeIfAbsent(vp.getName(), it -> new HashMap<>())
+                    .computeIfAbsent(vp.getQualifier(), it -> new ArrayList<>())
+                    .add(vp);
+
+            Signature sig = vp.getSignature();
+            if (sig != null) {
+                sig = sig.intern();
+                ViewPattern[] sigIndex = sm.getOrDefault(vp.getQualifier(), new ViewPattern[0]);
+                if (sig.getId() >= sigIndex.length) {
+                    sigIndex = Arrays.copyOf(sigIndex, sig.getId() + 1);
+                    sm.put(vp.getQualifier(), sigIndex);
+                }
+                if (sigIndex[sig.getId()] != null) {
+                    throw new IllegalStateException("Signature '" + sig + "' defined twice");
+                }
+                sigIndex[sig.getId()] = vp;
+            }
+        }
+
+        pm.values().forEach(qm -> qm.values().forEach(Collections::sort));
+
+        List<ViewPattern> order = new ArrayList<>(patterns);
+        Collections.sort(order);
+
+        this.patternOrder = Collections.unmodifiableList(order);
+        this.patternMap = pm;
+        this.signatureMap = sm;
+        this.patternTrie = new ViewPatternTrie(order, regExMatching);
+        this.literalMap = buildLiteralMap(patternTrie, order);
+        this.pathFilter = new PathFilter(order);
+    }
+
+    /**
+     * Returns the revision of this {@link RouteTable}. A {@link RouteTable} that was
+     * built later always has a higher revision.
+     *
+     * @return revision
+     */
+    public long getRevision() {
+        return revision;
+    }
+
+    /**
+     * Returns a collection of all defined {@link ViewPattern}.
+     *
+     * @return Collection of all {@link ViewPattern}, in the order of precedence
+     */
+    public @Nonnull Collection<ViewPattern> getViewPatterns() {
+        return patternOrder;
+    }
+
+    /**
+     * Returns a collection of {@link ViewPattern} that were defined for the given view.
+     *
+     * @param view
+     *            View name
+     * @param qualifier
+     *            Qualifier name, or {@code null}
+     * @return Collection of matching {@link ViewPattern}, empty if there is no such view
+     */
+    public @Nonnull Collection<ViewPattern> getViewPatternsForView(String view, @Nullable String qualifier) {
+        Map<String, List<ViewPattern>> viewMap = patternMap.get(view);
+        if (viewMap != null) {
+            List<ViewPattern> result = viewMap.get(qualifier);
+            if (result != null) {
+                return Collections.unmodifiableCollection(result);
+            }
+        }
+        return Collections.emptyList();
+    }
+
+    /**
+     * Returns the {@link ViewPattern} that handles the given {@link Signature}.
+     *
+     * @param signature
+     *            {@link Signature} to find a {@link ViewPattern} for
+     * @param qualifier
+     *            Qualifier name, or {@code null}
+     * @return {@link ViewPattern} found, or {@code null} if there is no such
+     *         {@link ViewPattern}
+     */
+    public ViewPattern getViewPatternForSignature(Signature signature, @Nullable String qualifier) {
+        ViewPattern[] sigIndex = signatureMap.get(qualifier);
+        int id = signature.getId();
+        if (sigIndex != null && id >= 0 && id < sigIndex.length) {
+            return sigIndex[id];
+        }
+        return null;
+    }
+
+    /**
+     * Finds the {@link ViewPattern} that handles the given URL path. If more than one
+     * {@link ViewPattern} matches, the one with the highest weight is taken.
+     *
+     * @param path
+     *            the requested URL path
+     * @return {@link ViewMatch} containing the {@link ViewPattern} and the resolved path
+     *         parts, or {@code null} if there is no {@link ViewPattern} for that path
+     */
+    public ViewMatch resolve(String path) {
+        ViewMatch match = literalMap.get(path);
+        if (match != null) {
+            return match;
+        }
+        if (!pathFilter.accepts(path)) {
+            return null;
+        }
+        return patternTrie.resolve(path);
+    }
+
+    /**
+     * Returns the statistics of all buckets of {@link ViewPattern} that have to be
+     * tried in sequence when resolving a URL.
+     *
+     * @return List of {@link BucketStatistics}, may be empty
+     */
+    public @Nonnull List<BucketStatistics> getBucketStatistics() {
+        return patternTrie.getStatistics();
+    }
+
+    @Override
+    public String toString() {
+        return "RouteTable[revision=" + revision + ", patterns=" + patternOrder.size() + ", literals=" + literalMap.size()
+                + ", " + pathFilter + "]";
+    }
+
+    /**
+     * Builds an index of all view patterns without placeholders, so requests to constant
+     * URLs can be resolved by a simple hash lookup.
+     * <p>
+     * A pattern with placeholders may still take precedence over a constant pattern, if
+     * its placeholders match empty strings and thus give it a higher weight. For this
+     * reason, each constant pattern is resolved against the trie, and is only indexed if
+     * it actually wins.
+     *
+     * @param trie
+     *            {@link ViewPatternTrie} containing all patterns
+     * @param patterns
+     *            List of all {@link ViewPattern}
+     * @return Map of constant URLs and their {@link ViewMatch}
+     */
+    private static Map<String, ViewMatch> buildLiteralMap(ViewPatternTrie trie, List<ViewPattern> patterns) {
+        Map<String, ViewMatch> result = new HashMap<>();
+        for (ViewPattern vp : patterns) {
+            if (!vp.getParameters().isEmpty()) {
+                continue;
+            }
+
+            ViewMatch match = trie.resolve(vp.getPattern());
+            if (match != null && match.getPattern().getParameters().isEmpty()) {
+                result.putIfAbsent(vp.getPattern(),
+                        new ViewMatch(match.getPattern(), Collections.emptyMap()));
+            }
+        }
+        return result;
+    }
+
+}
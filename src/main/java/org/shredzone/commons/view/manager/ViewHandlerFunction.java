@@ -0,0 +1,44 @@
+/*
+ * Shredzone Commons
+ *
+ * Copyright (C) 2012 Richard "Shred" Körber
+ *   http://commons.shredzone.org
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Library General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.shredzone.commons.view.manager;
+
+/**
+ * Invokes a view handler method directly, without reflection. Implementations are
+ * generated by the {@code ViewRouteProcessor} at compile time.
+ *
+ * @author Richard "Shred" Körber
+ */
+@FunctionalInterface
+public interface ViewHandlerFunction {
+
+    /**
+     * Invokes the view handler method.
+     *
+     * @param bean
+     *            View handler bean
+     * @param args
+     *            Method arguments, in the order of the method parameters
+     * @return Value returned by the view handler method, or {@code null} if the method
+     *         is {@code void}
+     */
+    Object invoke(Object bean, Object[] args) throws Exception;
+
+}
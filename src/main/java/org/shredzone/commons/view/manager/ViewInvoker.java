@@ -21,10 +21,16 @@
 package org.shredzone.commons.view.manager;
 
 import java.lang.annotation.Annotation;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Method;
 import java.lang.reflect.UndeclaredThrowableException;
+import java.util.HashMap;
+import java.util.Map;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import javax.annotation.ParametersAreNonnullByDefault;
 import javax.annotation.concurrent.Immutable;
 import javax.servlet.ServletRequest;
@@ -53,6 +59,9 @@ import org.springframework.util.ReflectionUtils;
 /**
  * Keeps a reference to and invokes a view handler.
  * <p>
+ * If no {@link ViewHandlerFunction} is given, the view handler method is bound to a
+ * {@link MethodHandle} once, so it is not invoked by reflection on every request.
+ * <p>
  * {@link ViewInvoker ViewInvokers} are immutable.
  *
  * @author Richard "Shred" Körber
@@ -61,11 +70,16 @@ import org.springframework.util.ReflectionUtils;
 @Immutable
 public class ViewInvoker {
     private static final Logger LOG = LoggerFactory.getLogger(ViewInvoker.class);
+    private static final TypeDescriptor STRING_TYPE = TypeDescriptor.valueOf(String.class);
+    private static final Object NOT_FOUND = new Object();
 
     private final Object bean;
     private final Method method;
     private final ConversionService conversionService;
-    private final Annotation[] viewAnnotations;
+    private final ViewHandlerFunction function;
+    private final boolean directConversion;
+    private final MethodHandle handle;
+    private final ArgumentResolver[] resolvers;
     private final boolean[] optionals;
 
     /**
@@ -79,12 +93,55 @@ public class ViewInvoker {
      *            {@link ConversionService} to be used for parameter conversion
      */
     public ViewInvoker(Object bean, Method method, ConversionService conversionService) {
+        this(bean, method, conversionService, null);
+    }
+
+    /**
+     * Creates a new {@link ViewInvoker}.
+     *
+     * @param bean
+     *            target Spring bean to be invoked
+     * @param method
+     *            target method to be invoked
+     * @param conversionService
+     *            {@link ConversionService} to be used for parameter conversion
+     * @param function
+     *            {@link ViewHandlerFunction} that invokes the method directly, or
+     *            {@code null} to invoke the method by reflection
+     */
+    public ViewInvoker(Object bean, Method method, ConversionService conversionService,
+            @Nullable ViewHandlerFunction function) {
+        this(bean, method, conversionService, function, false);
+    }
+
+    /**
+     * Creates a new {@link ViewInvoker}.
+     *
+     * @param bean
+     *            target Spring bean to be invoked
+     * @param method
+     *            target method to be invoked
+     * @param conversionService
+     *            {@link ConversionService} to be used for parameter conversion
+     * @param function
+     *            {@link ViewHandlerFunction} that invokes the method directly, or
+     *            {@code null} to invoke the method by reflection
+     * @param directConversion
+     *            {@code true} to convert plain strings to {@link String}, {@code long},
+     *            {@code int}, {@code boolean} and enum parameters directly, without
+     *            the {@link ConversionService}
+     */
+    public ViewInvoker(Object bean, Method method, ConversionService conversionService,
+            @Nullable ViewHandlerFunction function, boolean directConversion) {
         this.bean = bean;
         this.method = method;
         this.conversionService = conversionService;
+        this.function = function;
+        this.directConversion = directConversion;
+        this.handle = function == null ? createHandle(bean, method) : null;
 
         Annotation[][] annotations = method.getParameterAnnotations();
-        viewAnnotations = new Annotation[annotations.length];
+        Annotation[] viewAnnotations = new Annotation[annotations.length];
         optionals = new boolean[annotations.length];
 
         for (int ix = 0; ix < annotations.length; ix++) {
@@ -110,6 +167,12 @@ public class ViewInvoker {
                 }
             }
         }
+
+        Class<?>[] types = method.getParameterTypes();
+        resolvers = new ArgumentResolver[types.length];
+        for (int ix = 0; ix < types.length; ix++) {
+            resolvers[ix] = createResolver(types[ix], viewAnnotations[ix], optionals[ix]);
+        }
     }
 
     /**
@@ -132,11 +195,11 @@ public class ViewInvoker {
      *         took care for sending a response itself.
      */
     public String invoke(ViewContext context) throws ViewException {
-        Class<?>[] types = method.getParameterTypes();
-        Object[] values = new Object[types.length];
+        ArgumentResolver[] argumentResolvers = resolvers;
+        Object[] values = new Object[argumentResolvers.length];
 
-        for (int ix = 0; ix < types.length; ix++) {
-            Object result = evaluateParameter(types[ix], viewAnnotations[ix], optionals[ix], context);
+        for (int ix = 0; ix < argumentResolvers.length; ix++) {
+            Object result = argumentResolvers[ix].resolve(context);
             if (result == null && !optionals[ix]) {
                 throw new PageNotFoundException("Argument " + ix + " is required but missing.");
             }
@@ -144,6 +207,14 @@ public class ViewInvoker {
         }
 
         try {
+            if (function != null) {
+                return invokeFunction(values);
+            }
+
+            if (handle != null) {
+                return invokeHandle(values);
+            }
+
             Object renderViewName = ReflectionUtils.invokeMethod(method, bean, values);
             return renderViewName != null ? renderViewName.toString() : null;
         } catch (UndeclaredThrowableException|IllegalStateException ex) {
@@ -157,102 +228,314 @@ public class ViewInvoker {
     }
 
     /**
-     * Evaluates a single parameter of the handler method's parameter list.
+     * Invokes the view handler by its {@link ViewHandlerFunction}. Exceptions are
+     * handled like {@link ReflectionUtils#invokeMethod(Method, Object, Object...)} does.
+     *
+     * @param values
+     *            Method arguments
+     * @return String returned by the view handler
+     */
+    private String invokeFunction(Object[] values) throws ViewException {
+        try {
+            Object renderViewName = function.invoke(bean, values);
+            return renderViewName != null ? renderViewName.toString() : null;
+        } catch (ViewException | RuntimeException ex) {
+            throw ex;
+        } catch (Exception ex) {
+            throw new UndeclaredThrowableException(ex);
+        }
+    }
+
+    /**
+     * Invokes the view handler by its bound {@link MethodHandle}. Exceptions are
+     * handled like {@link ReflectionUtils#invokeMethod(Method, Object, Object...)} does.
+     *
+     * @param values
+     *            Method arguments
+     * @return String returned by the view handler
+     */
+    private String invokeHandle(Object[] values) throws ViewException {
+        try {
+            Object renderViewName = (Object) handle.invokeExact(values);
+            return renderViewName != null ? renderViewName.toString() : null;
+        } catch (ViewException | RuntimeException | Error ex) {
+            throw ex;
+        } catch (Throwable ex) {
+            throw new UndeclaredThrowableException(ex);
+        }
+    }
+
+    /**
+     * Creates a {@link MethodHandle} that invokes the view handler method on the bean.
+     * It accepts the method arguments as an array, and returns the result as
+     * {@link Object}.
+     *
+     * @param bean
+     *            target Spring bean to be invoked
+     * @param method
+     *            target method to be invoked
+     * @return {@link MethodHandle}, or {@code null} if the method is not accessible
+     *         and must be invoked by reflection
+     */
+    private static MethodHandle createHandle(Object bean, Method method) {
+        try {
+            ReflectionUtils.makeAccessible(method);
+            return MethodHandles.lookup().unreflect(method)
+                    .bindTo(bean)
+                    .asSpreader(Object[].class, method.getParameterCount())
+                    .asType(MethodType.methodType(Object.class, Object[].class));
+        } catch (IllegalAccessException | RuntimeException ex) {
+            LOG.debug("Cannot create method handle for {}, using reflection", method, ex);
+            return null;
+        }
+    }
+
+    /**
+     * Creates an {@link ArgumentResolver} for a single parameter of the handler
+     * method's parameter list.
      *
      * @param type
      *            Expected parameter type
      * @param anno
-     *            {@link Annotation} of this parameter
+     *            {@link Annotation} of this parameter, or {@code null} if the parameter
+     *            is not annotated
      * @param optional
      *            if this parameter is optional and may be {@code null}
-     * @param context
-     *            {@link ViewContext} containing all necessary data for invoking the view
-     * @return Parameter value to be passed to the method
+     * @return {@link ArgumentResolver} that evaluates the parameter value
      */
-    private Object evaluateParameter(Class<?> type, Annotation anno, boolean optional, ViewContext context)
-    throws ViewException {
+    private ArgumentResolver createResolver(Class<?> type, @Nullable Annotation anno, boolean optional) {
+        ValueConverter converter = createConverter(type);
 
         if (anno instanceof Parameter) {
             String name = ((Parameter) anno).value();
-            String value = context.getParameter(name);
-            if (value == null && !optional) {
-                throw new ViewContextException("Missing parameter " + name);
-            }
-            return conversionService.convert(value, type);
+            return context -> {
+                String value = context.getParameter(name);
+                if (value == null && !optional) {
+                    throw new ViewContextException("Missing parameter " + name);
+                }
+                return converter.convert(value);
+            };
         }
 
         if (anno instanceof PathPart) {
             String part = ((PathPart) anno).value();
-            String value = context.getPathParts().get(part);
-            if (value != null) {
-                return conversionService.convert(value, type);
-            } else if (optional) {
-                return conversionService.convert(null,
-                        TypeDescriptor.valueOf(String.class),
-                        TypeDescriptor.valueOf(type));
-            } else {
-                throw new ViewException("Unsatisfied path part: " + part);
-            }
+            return context -> {
+                String value = context.getPathParts().get(part);
+                if (value != null) {
+                    return converter.convert(value);
+                } else if (optional) {
+                    return converter.convert(null);
+                } else {
+                    throw new ViewException("Unsatisfied path part: " + part);
+                }
+            };
         }
 
         if (anno instanceof Attribute) {
             String name = ((Attribute) anno).value();
-            ServletRequest req = context.getValueOfType(ServletRequest.class);
-            Object value = req.getAttribute(name);
-            if (value == null && !optional) {
-                throw new ViewContextException("Missing attribute " + name);
-            }
-            return conversionService.convert(value, type);
+            return context -> {
+                ServletRequest req = context.getValueOfType(ServletRequest.class);
+                Object value = req.getAttribute(name);
+                if (value == null && !optional) {
+                    throw new ViewContextException("Missing attribute " + name);
+                }
+                return converter.convert(value);
+            };
         }
 
         if (anno instanceof Cookie) {
             String name = ((Cookie) anno).value();
-            HttpServletRequest req = context.getValueOfType(HttpServletRequest.class);
-            for (javax.servlet.http.Cookie cookie : req.getCookies()) {
-                if (name.equals(cookie.getName())) {
-                    return conversionService.convert(cookie.getValue(), type);
+            return context -> {
+                HttpServletRequest req = context.getValueOfType(HttpServletRequest.class);
+                for (javax.servlet.http.Cookie cookie : req.getCookies()) {
+                    if (name.equals(cookie.getName())) {
+                        return converter.convert(cookie.getValue());
+                    }
                 }
-            }
-            if (optional) {
-                return conversionService.convert(null,
-                        TypeDescriptor.valueOf(String.class),
-                        TypeDescriptor.valueOf(type));
-            } else {
-                throw new ViewException("Cookie not set: " + name);
-            }
+                if (optional) {
+                    return converter.convert(null);
+                } else {
+                    throw new ViewException("Cookie not set: " + name);
+                }
+            };
         }
 
         if (anno instanceof SessionId) {
-            HttpSession session = context.getValueOfType(HttpSession.class);
-            if (session != null) {
-                return conversionService.convert(session.getId(), type);
-            } else {
-                return conversionService.convert(null,
-                        TypeDescriptor.valueOf(String.class),
-                        TypeDescriptor.valueOf(type));
-            }
+            return context -> {
+                HttpSession session = context.getValueOfType(HttpSession.class);
+                if (session != null) {
+                    return converter.convert(session.getId());
+                } else {
+                    return converter.convert(null);
+                }
+            };
         }
 
         if (anno instanceof Qualifier) {
             // Qualifiers are always optional
-            return conversionService.convert(context.getQualifier(), type);
+            return context -> converter.convert(context.getQualifier());
+        }
+
+        if (ViewContext.class.isAssignableFrom(type)) {
+            // Who the heck would need this...
+            return context -> type.isInstance(context) ? context : findValue(context, type);
         }
 
         // Finally, try to get an object of that type from the data provider
-        try {
-            return context.getValueOfType(type);
-        } catch (ViewContextException ex) {
-            // ignore and continue...
-            LOG.debug("Failed to get value of type {} from context", type, ex);
+        return context -> findValue(context, type);
+    }
+
+    /**
+     * Finds a value of the given type in the {@link ViewContext}.
+     *
+     * @param context
+     *            {@link ViewContext} containing all necessary data for invoking the view
+     * @param type
+     *            Expected parameter type
+     * @return Parameter value to be passed to the method
+     * @throws ViewContextException
+     *             if there was no value of that type
+     */
+    @SuppressWarnings("unchecked")
+    private static Object findValue(ViewContext context, Class<?> type) throws ViewContextException {
+        Object value = context.findValueOfType((Class<Object>) type, NOT_FOUND);
+        if (value == NOT_FOUND) {
+            // Alas, we cannot find anything to satisfy this parameter
+            throw new ViewContextException("Unknown parameter type " + type.getName());
         }
+        return value;
+    }
 
-        // Who the heck would need this...
-        if (ViewContext.class.isAssignableFrom(type)) {
-            return context;
+    /**
+     * Creates a {@link ValueConverter} that converts values to the given parameter type.
+     * <p>
+     * Values are converted by the {@link ConversionService}, using type descriptors that
+     * are only looked up once. If direct conversion is enabled, plain strings are
+     * converted to {@link String}, {@code long}, {@code int}, {@code boolean} and enum
+     * types directly, so converters of the {@link ConversionService} for these types
+     * are not used.
+     *
+     * @param type
+     *            Expected parameter type
+     * @return {@link ValueConverter} for that type
+     */
+    private ValueConverter createConverter(Class<?> type) {
+        TypeDescriptor targetType = TypeDescriptor.valueOf(type);
+        ValueConverter generic = value -> {
+            if (value instanceof String || value == null) {
+                return conversionService.convert(value, STRING_TYPE, targetType);
+            }
+            return conversionService.convert(value, TypeDescriptor.forObject(value), targetType);
+        };
+
+        if (!directConversion) {
+            return generic;
+        }
+
+        if (type == String.class) {
+            return value -> value instanceof String ? value : generic.convert(value);
+        }
+
+        if (type == long.class || type == Long.class) {
+            return value -> {
+                if (value instanceof String && isPlainNumber((String) value, 18)) {
+                    return Long.parseLong((String) value);
+                }
+                return generic.convert(value);
+            };
+        }
+
+        if (type == int.class || type == Integer.class) {
+            return value -> {
+                if (value instanceof String && isPlainNumber((String) value, 9)) {
+                    return Integer.parseInt((String) value);
+                }
+                return generic.convert(value);
+            };
+        }
+
+        if (type == boolean.class || type == Boolean.class) {
+            return value -> {
+                if ("true".equals(value)) {
+                    return Boolean.TRUE;
+                } else if ("false".equals(value)) {
+                    return Boolean.FALSE;
+                }
+                return generic.convert(value);
+            };
+        }
+
+        if (type.isEnum()) {
+            Map<String, Object> constants = new HashMap<>();
+            for (Object constant : type.getEnumConstants()) {
+                constants.put(((Enum<?>) constant).name(), constant);
+            }
+            return value -> {
+                Object result = value instanceof String ? constants.get(value) : null;
+                return result != null ? result : generic.convert(value);
+            };
         }
 
-        // Alas, we cannot find anything to satisfy this parameter
-        throw new ViewContextException("Unknown parameter type " + type.getName());
+        return generic;
+    }
+
+    /**
+     * Checks if the string is a plain decimal number, with an optional minus sign. Other
+     * formats like hexadecimal numbers or surrounding whitespaces are left to the
+     * {@link ConversionService}.
+     *
+     * @param str
+     *            String to check
+     * @param maxDigits
+     *            Maximum number of digits, so the number cannot overflow
+     * @return {@code true} if the string is a plain decimal number
+     */
+    private static boolean isPlainNumber(String str, int maxDigits) {
+        int length = str.length();
+        int start = length > 0 && str.charAt(0) == '-' ? 1 : 0;
+        if (length == start || length - start > maxDigits) {
+            return false;
+        }
+        for (int ix = start; ix < length; ix++) {
+            char ch = str.charAt(ix);
+            if (ch < '0' || ch > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Converts a value to the type of a handler method parameter.
+     */
+    @FunctionalInterface
+    private interface ValueConverter {
+        /**
+         * Converts the value.
+         *
+         * @param value
+         *            Value to convert, may be {@code null}
+         * @return Converted value
+         */
+        Object convert(@Nullable Object value);
+    }
+
+    /**
+     * Evaluates the value of a single parameter of the handler method. The resolvers
+     * are created once per parameter, so the annotations do not need to be inspected
+     * on each invocation.
+     */
+    @FunctionalInterface
+    private interface ArgumentResolver {
+        /**
+         * Evaluates the parameter value.
+         *
+         * @param context
+         *            {@link ViewContext} containing all necessary data for invoking the
+         *            view
+         * @return Parameter value to be passed to the method
+         */
+        Object resolve(ViewContext context) throws ViewException;
     }
 
 }
@@ -22,46 +22,72 @@ package org.shredzone.commons.view.manager;
 
 import java.lang.reflect.Method;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.HashMap;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import javax.annotation.ParametersAreNonnullByDefault;
 import javax.annotation.PostConstruct;
 import javax.annotation.Resource;
+import javax.annotation.concurrent.ThreadSafe;
 
 import org.shredzone.commons.view.Signature;
 import org.shredzone.commons.view.annotation.View;
 import org.shredzone.commons.view.annotation.ViewGroup;
 import org.shredzone.commons.view.annotation.ViewHandler;
+import org.shredzone.commons.view.util.ViewRouteUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.context.ApplicationContext;
 import org.springframework.core.annotation.AnnotationUtils;
 import org.springframework.core.convert.ConversionService;
 import org.springframework.stereotype.Component;
-import org.springframework.util.StringUtils;
+import org.springframework.util.ClassUtils;
 
 /**
  * Manages the view handlers.
+ * <p>
+ * All routes are kept in an immutable {@link RouteTable}. When view handlers are
+ * registered or unregistered at runtime, a new {@link RouteTable} is built and then
+ * replaces the current one. Requests are always resolved against a consistent snapshot,
+ * without any locking.
  *
  * @author Richard "Shred" Körber
  */
 @Component
 @ParametersAreNonnullByDefault
+@ThreadSafe
 public class ViewManager {
     private final Logger log = LoggerFactory.getLogger(this.getClass());
 
     @Resource private ApplicationContext applicationContext;
     @Resource private ConversionService conversionService;
 
-    private Map<String, Map<String, List<ViewPattern>>> patternMap = new HashMap<>();
-    private Map<String, Map<Signature, ViewPattern>> signatureMap = new HashMap<>();
-    private List<ViewPattern> patternOrder = new ArrayList<>();
+    private final Map<Object, List<ViewPattern>> handlers = new LinkedHashMap<>();
+    private volatile RouteTable routeTable = new RouteTable(Collections.emptyList(), false);
+    private volatile boolean regExMatching = false;
+    private volatile boolean parallelSetup = true;
+    private volatile boolean compileExpressions = true;
+    private volatile boolean directConversion = false;
+
+    /**
+     * Returns the current {@link RouteTable}. It is an immutable snapshot, and is not
+     * affected by view handlers that are registered or unregistered later.
+     *
+     * @return current {@link RouteTable}
+     */
+    public @Nonnull RouteTable getRouteTable() {
+        return routeTable;
+    }
 
     /**
      * Returns a collection of all defined {@link ViewPattern}.
@@ -69,7 +95,7 @@ public class ViewManager {
      * @return Collection of matching {@link ViewPattern}
      */
     public @Nonnull Collection<ViewPattern> getViewPatterns() {
-        return Collections.unmodifiableCollection(patternOrder);
+        return routeTable.getViewPatterns();
     }
 
     /**
@@ -82,14 +108,7 @@ public class ViewManager {
      * @return Collection of matching {@link ViewPattern}, empty if there is no such view
      */
     public @Nonnull Collection<ViewPattern> getViewPatternsForView(String view, @Nullable String qualifier) {
-        Map<String, List<ViewPattern>> viewMap = patternMap.get(view);
-        if (viewMap != null) {
-            List<ViewPattern> result = viewMap.get(qualifier);
-            if (result != null) {
-                return Collections.unmodifiableCollection(result);
-            }
-        }
-        return Collections.emptyList();
+        return routeTable.getViewPatternsForView(view, qualifier);
     }
 
     /**
@@ -103,100 +122,374 @@ public class ViewManager {
      *         {@link ViewPattern}
      */
     public ViewPattern getViewPatternForSignature(Signature signature, @Nullable String qualifier) {
-        Map<Signature, ViewPattern> sigMap = signatureMap.get(qualifier);
-        if (sigMap != null) {
-            return sigMap.get(signature);
+        return routeTable.getViewPatternForSignature(signature, qualifier);
+    }
+
+    /**
+     * Selects how requested URLs are matched against the view patterns. By default, a
+     * fast matcher is used that is specialized on view patterns. If set to {@code true},
+     * the regular expressions of the view patterns are used instead.
+     * <p>
+     * Must be set before the view manager is set up.
+     *
+     * @param regExMatching
+     *            {@code true} to use regular expressions for matching
+     */
+    public void setRegExMatching(boolean regExMatching) {
+        this.regExMatching = regExMatching;
+    }
+
+    /**
+     * Selects if view handlers are scanned and their view patterns compiled in parallel
+     * on setup. This is enabled by default. The result does not depend on this setting.
+     * <p>
+     * Must be set before the view manager is set up.
+     *
+     * @param parallelSetup
+     *            {@code true} to set up in parallel
+     */
+    public void setParallelSetup(boolean parallelSetup) {
+        this.parallelSetup = parallelSetup;
+    }
+
+    /**
+     * Selects if the expressions of the view patterns are compiled to bytecode, so
+     * building URLs is faster. This is enabled by default. Expressions that cannot be
+     * compiled, or whose compiled code fails, are interpreted.
+     * <p>
+     * Must be set before the view manager is set up.
+     *
+     * @param compileExpressions
+     *            {@code true} to compile expressions
+     */
+    public void setCompileExpressions(boolean compileExpressions) {
+        this.compileExpressions = compileExpressions;
+    }
+
+    /**
+     * Selects if plain strings are converted to {@link String}, {@code long},
+     * {@code int}, {@code boolean} and enum handler parameters directly, without the
+     * {@link ConversionService}. This is disabled by default.
+     * <p>
+     * Only enable it if the {@link ConversionService} has no custom converters from
+     * {@link String} to these types, as they would be bypassed. Must be set before the
+     * view manager is set up.
+     *
+     * @param directConversion
+     *            {@code true} to convert these parameters directly
+     */
+    public void setDirectConversion(boolean directConversion) {
+        this.directConversion = directConversion;
+    }
+
+    /**
+     * Finds the {@link ViewPattern} that handles the given URL path. If more than one
+     * {@link ViewPattern} matches, the one with the highest weight is taken.
+     *
+     * @param path
+     *            the requested URL path
+     * @return {@link ViewMatch} containing the {@link ViewPattern} and the resolved path
+     *         parts, or {@code null} if there is no {@link ViewPattern} for that path
+     */
+    public ViewMatch resolve(String path) {
+        return routeTable.resolve(path);
+    }
+
+    /**
+     * Returns the statistics of all buckets of {@link ViewPattern} that have to be
+     * tried in sequence when resolving a URL. Statistics are not available if regular
+     * expressions are used for matching.
+     *
+     * @return List of {@link BucketStatistics}, may be empty
+     */
+    public @Nonnull List<BucketStatistics> getBucketStatistics() {
+        return routeTable.getBucketStatistics();
+    }
+
+    /**
+     * Registers a view handler at runtime, e.g. from a plugin or a refreshed child
+     * context. If the view handler was already registered, its views are scanned again.
+     * <p>
+     * The routes are rebuilt and replace the current routes atomically. Requests that
+     * are currently processed are not affected.
+     *
+     * @param bean
+     *            View handler bean, must be annotated with {@link ViewHandler}
+     * @throws IllegalArgumentException
+     *             if the bean is not a view handler
+     * @throws IllegalStateException
+     *             if a signature of the view handler is already defined. The routes
+     *             are unchanged then.
+     */
+    public synchronized void registerHandler(Object bean) {
+        if (bean.getClass().getAnnotation(ViewHandler.class) == null) {
+            throw new IllegalArgumentException("Not a @ViewHandler: " + bean.getClass().getName());
+        }
+
+        Map<Object, List<ViewPattern>> newHandlers = new LinkedHashMap<>(handlers);
+        newHandlers.put(bean, compile(scanHandler(bean), false));
+        rebuild(newHandlers);
+    }
+
+    /**
+     * Unregisters a view handler at runtime. The routes are rebuilt and replace the
+     * current routes atomically. Requests that are currently processed are not
+     * affected.
+     *
+     * @param bean
+     *            View handler bean to be removed
+     * @return {@code true} if the view handler was registered, {@code false} if it was
+     *         unknown
+     */
+    public synchronized boolean unregisterHandler(Object bean) {
+        if (!handlers.containsKey(bean)) {
+            return false;
         }
-        return null;
+
+        Map<Object, List<ViewPattern>> newHandlers = new LinkedHashMap<>(handlers);
+        newHandlers.remove(bean);
+        rebuild(newHandlers);
+        return true;
     }
 
     /**
      * Sets up the view manager. All Spring beans are searched for {@link ViewHandler}
      * annotations.
+     * <p>
+     * The view handlers are scanned, and the views are compiled, in parallel. The
+     * results are merged in the order of the beans, so the outcome is the same as if
+     * everything was done sequentially.
      */
     @PostConstruct
-    protected void setup() {
-        Collection<Object> beans = applicationContext.getBeansWithAnnotation(ViewHandler.class).values();
-        for (Object bean : beans) {
-            ViewHandler vhAnno = bean.getClass().getAnnotation(ViewHandler.class);
-            if (vhAnno != null) {
-                for (Method method : bean.getClass().getMethods()) {
-                    ViewGroup groupAnno = AnnotationUtils.findAnnotation(method, ViewGroup.class);
-                    if (groupAnno != null) {
-                        for (View viewAnno : groupAnno.value()) {
-                            processView(bean, method, viewAnno);
-                        }
-                    }
-
-                    View viewAnno = AnnotationUtils.findAnnotation(method, View.class);
-                    if (viewAnno != null) {
-                        processView(bean, method, viewAnno);
-                    }
-                }
-            }
+    protected synchronized void setup() {
+        long start = System.nanoTime();
+
+        List<Object> beans = applicationContext.getBeansWithAnnotation(ViewHandler.class).values().stream()
+                .filter(bean -> bean.getClass().getAnnotation(ViewHandler.class) != null)
+                .collect(Collectors.toList());
+
+        List<List<Declaration>> declarations = stream(beans, parallelSetup)
+                .map(this::scanHandler)
+                .collect(Collectors.toList());
+
+        long scanned = System.nanoTime();
+
+        List<ViewPattern> patterns = compile(declarations.stream()
+                .flatMap(List::stream)
+                .collect(Collectors.toList()), parallelSetup);
+
+        long compiled = System.nanoTime();
+
+        Map<Object, List<ViewPattern>> newHandlers = new LinkedHashMap<>();
+        int pos = 0;
+        for (int ix = 0; ix < beans.size(); ix++) {
+            int count = declarations.get(ix).size();
+            newHandlers.put(beans.get(ix), new ArrayList<>(patterns.subList(pos, pos + count)));
+            pos += count;
         }
+        rebuild(newHandlers);
+
+        long indexed = System.nanoTime();
 
-        patternMap.values().forEach(pm -> pm.values().forEach(Collections::sort));
-        Collections.sort(patternOrder);
+        log.info("Set up {} views of {} view handlers in {} ms (scan {} ms, compile {} ms, index {} ms)",
+                patterns.size(), beans.size(),
+                TimeUnit.NANOSECONDS.toMillis(indexed - start),
+                TimeUnit.NANOSECONDS.toMillis(scanned - start),
+                TimeUnit.NANOSECONDS.toMillis(compiled - scanned),
+                TimeUnit.NANOSECONDS.toMillis(indexed - compiled));
     }
 
     /**
-     * Processes a {@link View}. A view name and view pattern is generated, and a
-     * {@link ViewInvoker} is built.
+     * Builds a new {@link RouteTable} from the given view handlers. If it could be
+     * built, it replaces the current {@link RouteTable}.
+     *
+     * @param newHandlers
+     *            Map of all view handlers and their {@link ViewPattern}
+     */
+    private void rebuild(Map<Object, List<ViewPattern>> newHandlers) {
+        List<ViewPattern> patterns = new ArrayList<>();
+        newHandlers.values().forEach(patterns::addAll);
+
+        RouteTable table = new RouteTable(patterns, regExMatching);
+
+        handlers.clear();
+        handlers.putAll(newHandlers);
+        routeTable = table;
+
+        log.debug("Using {}", table);
+    }
+
+    /**
+     * Scans a view handler for {@link View} annotated methods. If a {@link ViewRoutes}
+     * class was generated for the view handler, it is used instead.
+     * <p>
+     * The declarations are sorted by the method signatures, and keep the order of the
+     * annotations of each method. Neither reflection nor the generated routes give a
+     * defined method order, but patterns of equal weight must be found in the same
+     * order.
      *
      * @param bean
-     *            Spring bean to be used
-     * @param method
-     *            View handler method to be invoked
-     * @param anno
-     *            {@link View} annotation
+     *            Spring bean to be scanned
+     * @return List of {@link Declaration} found in that bean, in a stable order
      */
-    private void processView(Object bean, Method method, View anno) {
-        String name = computeViewName(method, anno);
+    private List<Declaration> scanHandler(Object bean) {
+        List<Declaration> result = new ArrayList<>();
 
-        Map<String, List<ViewPattern>> vpMap = patternMap.computeIfAbsent(name, it -> new HashMap<>());
+        ViewRoutes routes = loadRoutes(ClassUtils.getUserClass(bean));
+        if (routes != null) {
+            for (ViewRoute route : routes.getRoutes()) {
+                Method method = ClassUtils.getMethod(bean.getClass(), route.getMethodName(), route.getParameterTypes());
+                result.add(new Declaration(bean, method, route));
+            }
+            result.sort(Comparator.comparing(decl -> methodSignature(decl.method)));
+            return result;
+        }
 
-        ViewInvoker invoker = new ViewInvoker(bean, method, conversionService);
-        ViewPattern vp = new ViewPattern(anno, invoker);
+        for (Method method : bean.getClass().getMethods()) {
+            if (method.getDeclaringClass() == Object.class) {
+                continue;
+            }
 
-        List<ViewPattern> vpList = vpMap.computeIfAbsent(vp.getQualifier(), it -> new ArrayList<>());
-        vpList.add(vp);
+            ViewGroup groupAnno = AnnotationUtils.findAnnotation(method, ViewGroup.class);
+            if (groupAnno != null) {
+                for (View viewAnno : groupAnno.value()) {
+                    result.add(new Declaration(bean, method, createRoute(method, viewAnno)));
+                }
+            }
 
-        Signature sig = vp.getSignature();
-        if (sig != null) {
-            Map<Signature, ViewPattern> sigMap = signatureMap.computeIfAbsent(vp.getQualifier(), it -> new HashMap<>());
-            if (sigMap.putIfAbsent(sig, vp) != null) {
-                throw new IllegalStateException("Signature '" + sig + "' defined twice");
+            View viewAnno = AnnotationUtils.findAnnotation(method, View.class);
+            if (viewAnno != null) {
+                result.add(new Declaration(bean, method, createRoute(method, viewAnno)));
             }
         }
+        result.sort(Comparator.comparing(decl -> methodSignature(decl.method)));
+        return result;
+    }
+
+    /**
+     * Returns the signature of a method, consisting of its name and parameter types.
+     *
+     * @param method
+     *            {@link Method} to get the signature of
+     * @return Method signature
+     */
+    private static String methodSignature(Method method) {
+        return Arrays.stream(method.getParameterTypes())
+                .map(Class::getName)
+                .collect(Collectors.joining(",", method.getName() + "(", ")"));
+    }
+
+    /**
+     * Loads the {@link ViewRoutes} that were generated for a view handler class.
+     *
+     * @param handlerClass
+     *            View handler class
+     * @return {@link ViewRoutes} instance, or {@code null} if there is none
+     */
+    private @Nullable ViewRoutes loadRoutes(Class<?> handlerClass) {
+        Class<?> routesClass;
+        try {
+            routesClass = ClassUtils.forName(handlerClass.getName() + ViewRoutes.SUFFIX,
+                    handlerClass.getClassLoader());
+        } catch (ClassNotFoundException | LinkageError ex) {
+            return null;
+        }
 
-        patternOrder.add(vp);
+        if (!ViewRoutes.class.isAssignableFrom(routesClass)) {
+            log.warn("Ignoring {}, as it does not implement {}", routesClass.getName(), ViewRoutes.class.getName());
+            return null;
+        }
 
-        log.info("Found view '{}' with pattern '{}'", name, anno.pattern());
+        try {
+            log.debug("Using generated {}", routesClass.getName());
+            return (ViewRoutes) routesClass.getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException ex) {
+            throw new IllegalStateException("Could not instantiate " + routesClass.getName(), ex);
+        }
     }
 
     /**
-     * Computes a view name. If the {@link View} annotation contains a name, it is used.
-     * If no name is given, it is guessed by the method name. If the method name ends with
-     * "View", it is removed.
+     * Creates a {@link ViewRoute} from a {@link View} annotation.
      *
      * @param method
-     *            {@link Method} of the view handler
+     *            View handler method
      * @param anno
      *            {@link View} annotation
-     * @return view name to be used for this view
+     * @return {@link ViewRoute} of that view
      */
-    private @Nonnull String computeViewName(Method method, View anno) {
-        if (StringUtils.hasText(anno.name())) {
-            return anno.name();
-        }
+    private ViewRoute createRoute(Method method, View anno) {
+        return new ViewRoute(
+                ViewRouteUtils.computeViewName(method.getName(), anno),
+                anno.pattern(),
+                anno.signature(),
+                anno.qualifier(),
+                ViewRouteUtils.computeWeight(anno.pattern()),
+                method.getName(),
+                method.getParameterTypes(),
+                null);
+    }
 
-        String name = method.getName();
-        if (name.length() > 4 && name.endsWith("View")) {
-            name = name.substring(0, name.length() - "View".length());
-        }
+    /**
+     * Compiles the {@link ViewPattern} of all declared views.
+     *
+     * @param declarations
+     *            List of {@link Declaration} to compile
+     * @param parallel
+     *            {@code true} to compile in parallel
+     * @return List of {@link ViewPattern}, in the order of the declarations
+     */
+    private List<ViewPattern> compile(List<Declaration> declarations, boolean parallel) {
+        List<ViewPattern> result = stream(declarations, parallel)
+                .map(decl -> processView(decl.bean, decl.method, decl.route))
+                .collect(Collectors.toList());
+
+        result.forEach(vp -> log.info("Found view '{}' with pattern '{}'", vp.getName(), vp.getPattern()));
+
+        return result;
+    }
+
+    /**
+     * Processes a {@link ViewRoute}. A view pattern is generated, and a
+     * {@link ViewInvoker} is built.
+     *
+     * @param bean
+     *            Spring bean to be used
+     * @param method
+     *            View handler method to be invoked
+     * @param route
+     *            {@link ViewRoute} of the view
+     * @return {@link ViewPattern} of that view
+     */
+    private ViewPattern processView(Object bean, Method method, ViewRoute route) {
+        ViewInvoker invoker = new ViewInvoker(bean, method, conversionService, route.getFunction(),
+                directConversion);
+        ViewPattern vp = new ViewPattern(route.getName(), route.getPattern(), route.getSignature(),
+                route.getQualifier(), route.getWeight(), invoker);
+        vp.setCompileExpressions(compileExpressions);
+        return vp;
+    }
 
-        return name;
+    /**
+     * Returns a sequential or parallel stream of the collection. Parallel streams are
+     * run on the common fork-join pool.
+     */
+    private static <T> Stream<T> stream(Collection<T> collection, boolean parallel) {
+        return parallel ? collection.parallelStream() : collection.stream();
+    }
+
+    /**
+     * A view declaration that was found in a view handler.
+     */
+    private static class Declaration {
+        private final Object bean;
+        private final Method method;
+        private final ViewRoute route;
+
+        private Declaration(Object bean, Method method, ViewRoute route) {
+            this.bean = bean;
+            this.method = method;
+            this.route = route;
+        }
     }
 
 }
@@ -0,0 +1,75 @@
+/*
+ * Shredzone Commons
+ *
+ * Copyright (C) 2012 Richard "Shred" Körber
+ *   http://commons.shredzone.org
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Library General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.shredzone.commons.view.manager;
+
+import java.util.Map;
+
+import javax.annotation.Nonnull;
+import javax.annotation.ParametersAreNonnullByDefault;
+import javax.annotation.concurrent.Immutable;
+
+/**
+ * The result of resolving a requested URL. It contains the {@link ViewPattern} that
+ * matched the URL, and the path parts that were found in the URL.
+ * <p>
+ * {@link ViewMatch ViewMatches} are immutable.
+ *
+ * @author Richard "Shred" Körber
+ */
+@ParametersAreNonnullByDefault
+@Immutable
+public class ViewMatch {
+
+    private final ViewPattern pattern;
+    private final Map<String, String> pathParts;
+
+    /**
+     * Creates a new {@link ViewMatch}.
+     *
+     * @param pattern
+     *            {@link ViewPattern} that matched the URL
+     * @param pathParts
+     *            Map of placeholder names and their values in the URL
+     */
+    public ViewMatch(ViewPattern pattern, Map<String, String> pathParts) {
+        this.pattern = pattern;
+        this.pathParts = pathParts;
+    }
+
+    /**
+     * Gets the {@link ViewPattern} that matched the URL.
+     *
+     * @return {@link ViewPattern}
+     */
+    public @Nonnull ViewPattern getPattern() {
+        return pattern;
+    }
+
+    /**
+     * Gets the placeholder names and their values in the URL.
+     *
+     * @return Map of path parts
+     */
+    public @Nonnull Map<String, String> getPathParts() {
+        return pathParts;
+    }
+
+}
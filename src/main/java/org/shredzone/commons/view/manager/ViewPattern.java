@@ -20,26 +20,37 @@
 
 package org.shredzone.commons.view.manager;
 
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
-import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
-import java.util.stream.IntStream;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import javax.annotation.ParametersAreNonnullByDefault;
 import javax.annotation.concurrent.Immutable;
 
 import org.shredzone.commons.view.PathContext;
 import org.shredzone.commons.view.Signature;
 import org.shredzone.commons.view.annotation.View;
-import org.shredzone.commons.view.util.PathUtils;
+import org.shredzone.commons.view.util.ViewRouteUtils;
 import org.springframework.expression.EvaluationContext;
 import org.springframework.expression.Expression;
-import org.springframework.expression.ExpressionParser;
+import org.springframework.expression.common.LiteralExpression;
+import org.springframework.expression.spel.SpelCompilerMode;
+import org.springframework.expression.spel.SpelNode;
+import org.springframework.expression.spel.SpelParserConfiguration;
+import org.springframework.expression.spel.ast.CompoundExpression;
+import org.springframework.expression.spel.ast.FunctionReference;
+import org.springframework.expression.spel.ast.VariableReference;
+import org.springframework.expression.spel.standard.SpelExpression;
 import org.springframework.expression.spel.standard.SpelExpressionParser;
 
 /**
@@ -54,15 +65,32 @@ import org.springframework.expression.spel.standard.SpelExpressionParser;
 @Immutable
 public class ViewPattern implements Comparable<ViewPattern> {
     private static final Pattern PATH_PART = Pattern.compile("\\$\\{([^\\}]+)\\}");
+    private static final Pattern ENCODE_CALL = Pattern.compile("#encode\\s*\\(");
+    private static final SpelExpressionParser PARSER = new SpelExpressionParser(
+            new SpelParserConfiguration(SpelCompilerMode.OFF, null));
+    private static final Set<String> NULL_REJECTING_FUNCTIONS =
+            new HashSet<>(Arrays.asList("encode", "simplify", "suffix"));
 
+    private final String name;
     private final String pattern;
     private final ViewInvoker invoker;
     private final Signature signature;
-    private final Pattern regEx;
-    private final List<Expression> expression;
+    private final String regExSource;
+    private final String[] fixedParts;
     private final List<String> parameter;
+    private final String[] keys;
+    private final int[] keyIndex;
+    private final boolean[] keyDecode;
+    private final String[] segments;
+    private final String[] segmentPrefixes;
+    private final String[] segmentSuffixes;
     private final int weight;
     private final String qualifier;
+    private volatile Pattern regEx;
+    private volatile PlaceholderExpression[] expressions;
+    private volatile Signature requirements;
+    private volatile String[] requiredVariables;
+    private volatile boolean compileExpressions = true;
 
     /**
      * Instantiates a new view pattern.
@@ -73,31 +101,96 @@ public class ViewPattern implements Comparable<ViewPattern> {
      *            {@link ViewInvoker} for rendering this view
      */
     public ViewPattern(View anno, ViewInvoker invoker) {
+        this(anno.name(), anno, invoker);
+    }
+
+    /**
+     * Instantiates a new view pattern.
+     *
+     * @param name
+     *            View name
+     * @param anno
+     *            {@link View} annotation
+     * @param invoker
+     *            {@link ViewInvoker} for rendering this view
+     */
+    public ViewPattern(String name, View anno, ViewInvoker invoker) {
+        this(name, anno.pattern(), anno.signature(), anno.qualifier(),
+                ViewRouteUtils.computeWeight(anno.pattern()), invoker);
+    }
+
+    /**
+     * Instantiates a new view pattern from precomputed values.
+     *
+     * @param name
+     *            View name
+     * @param pattern
+     *            View pattern
+     * @param sig
+     *            Signature, or {@code null} or empty if the view has no signature
+     * @param qualifier
+     *            Qualifier, or {@code null} or empty for the default qualifier
+     * @param weight
+     *            Weight of the view pattern, as computed by
+     *            {@link ViewRouteUtils#computeWeight(String)}
+     * @param invoker
+     *            {@link ViewInvoker} for rendering this view
+     */
+    public ViewPattern(String name, String pattern, @Nullable String[] sig,
+            @Nullable String qualifier, int weight, ViewInvoker invoker) {
+        this.name = name;
         this.invoker = invoker;
-        this.pattern = anno.pattern();
+        this.pattern = pattern;
 
-        if (anno.qualifier() != null && !anno.qualifier().isEmpty()) {
-            this.qualifier = anno.qualifier();
+        if (qualifier != null && !qualifier.isEmpty()) {
+            this.qualifier = qualifier;
         } else {
             this.qualifier = null;
         }
 
-        String[] sig = anno.signature();
         if (sig != null && sig.length > 0) {
             this.signature = new Signature(sig);
         } else {
             this.signature = null;
         }
 
-        List<Expression> expList = new ArrayList<>();
         List<String> paramList = new ArrayList<>();
+        List<String> fixedList = new ArrayList<>();
         StringBuilder pb = new StringBuilder();
-        compilePattern(this.pattern, pb, expList, paramList);
-        this.regEx = Pattern.compile(pb.toString());
-        this.expression = Collections.unmodifiableList(expList);
+        compilePattern(this.pattern, pb, paramList, fixedList);
+        this.regExSource = pb.toString();
+        this.fixedParts = fixedList.toArray(new String[fixedList.size()]);
         this.parameter = Collections.unmodifiableList(paramList);
 
-        this.weight = computeWeight(this.pattern);
+        // If a placeholder name is used more than once, the last occurrence is used
+        Map<String, Integer> keyMap = new LinkedHashMap<>();
+        for (int ix = 0; ix < paramList.size(); ix++) {
+            keyMap.put(paramList.get(ix), ix);
+        }
+        this.keys = keyMap.keySet().toArray(new String[keyMap.size()]);
+        this.keyIndex = keyMap.values().stream().mapToInt(Integer::intValue).toArray();
+
+        // Path parts only need to be decoded if they have been encoded
+        this.keyDecode = new boolean[keys.length];
+        for (int ix = 0; ix < keys.length; ix++) {
+            keyDecode[ix] = ENCODE_CALL.matcher(keys[ix]).find();
+        }
+
+        String[][] split = splitSegments(this.pattern);
+        this.segments = split[0];
+        this.segmentPrefixes = split[1];
+        this.segmentSuffixes = split[2];
+
+        this.weight = weight;
+    }
+
+    /**
+     * Gets the name of the view that is rendered by this {@link ViewPattern}.
+     *
+     * @return View name
+     */
+    public String getName() {
+        return name;
     }
 
     /**
@@ -141,21 +234,196 @@ public class ViewPattern implements Comparable<ViewPattern> {
      * Gets a regular expression {@link Pattern} to match a URL against this
      * {@link ViewPattern}. This regular expression can be used to quickly find view
      * candidates for a request URL.
+     * <p>
+     * The regular expression is compiled on first invocation. {@link #matches(String)}
+     * and {@link #resolve(String)} do not use it.
      *
      * @return regular expression {@link Pattern}.
      */
     public @Nonnull Pattern getRegEx() {
-        return regEx;
+        Pattern result = regEx;
+        if (result == null) {
+            result = Pattern.compile(regExSource);
+            regEx = result;
+        }
+        return result;
     }
 
     /**
-     * Returns an {@link Expression} for each placeholder in the pattern. The expressions
-     * are used for building an URL to this view.
+     * Gets the source of the regular expression, without compiling it.
+     *
+     * @return regular expression
+     */
+    String getRegExSource() {
+        return regExSource;
+    }
+
+    /**
+     * Returns an {@link Expression} for each constant part and each placeholder in the
+     * pattern. The expressions are used for building an URL to this view.
+     * <p>
+     * The constant parts are returned as {@link LiteralExpression}.
      *
      * @return List of {@link Expression}
      */
     public @Nonnull List<Expression> getExpression() {
-        return expression;
+        PlaceholderExpression[] placeholders = getPlaceholderExpressions();
+        List<Expression> result = new ArrayList<>(placeholders.length * 2 + 1);
+        for (int ix = 0; ix < placeholders.length; ix++) {
+            result.add(new LiteralExpression(fixedParts[ix]));
+            result.add(placeholders[ix].getExpression());
+        }
+        result.add(new LiteralExpression(fixedParts[placeholders.length]));
+        return Collections.unmodifiableList(result);
+    }
+
+    /**
+     * Returns the parsed {@link PlaceholderExpression} of each placeholder. The
+     * expressions are parsed on first invocation, as many views never have URLs built
+     * to them.
+     *
+     * @return Array of {@link PlaceholderExpression}, one per placeholder
+     */
+    private PlaceholderExpression[] getPlaceholderExpressions() {
+        PlaceholderExpression[] result = expressions;
+        if (result == null) {
+            synchronized (this) {
+                result = expressions;
+                if (result == null) {
+                    result = new PlaceholderExpression[parameter.size()];
+                    Set<String> required = new HashSet<>();
+                    for (int ix = 0; ix < result.length; ix++) {
+                        SpelExpression spel = (SpelExpression) PARSER.parseExpression(parameter.get(ix));
+                        collectRequirements(spel.getAST(), required);
+                        result[ix] = new PlaceholderExpression(spel);
+                    }
+                    requirements = new Signature(required).intern();
+                    requiredVariables = required.stream()
+                            .map(var -> var.substring(1))
+                            .toArray(String[]::new);
+                    expressions = result;
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns a {@link Signature} of all variables that must be set, so this pattern is
+     * able to build a path. Variable names are prefixed with '#'.
+     * <p>
+     * Only those variables are regarded that would make the evaluation fail when
+     * missing. Properties are never required, as they might be provided by getters of
+     * the {@link PathContext} that are not part of its signature.
+     *
+     * @return {@link Signature} of the required variables
+     */
+    public @Nonnull Signature getRequirements() {
+        getPlaceholderExpressions();
+        return requirements;
+    }
+
+    /**
+     * Checks if all variables this pattern requires are available. If a variable is
+     * missing, this pattern is unable to build a path, and does not need to be
+     * evaluated.
+     * <p>
+     * Variables that are set in the {@link PathContext} are found by its
+     * {@link Signature}. All other variables are looked up in the
+     * {@link EvaluationContext}, as they may also be provided by the view service.
+     *
+     * @param signature
+     *            {@link Signature} of the {@link PathContext}
+     * @param context
+     *            {@link EvaluationContext} that would be used for evaluation
+     * @return {@code true} if all requirements are met, {@code false} if this pattern
+     *         is unable to build a path
+     */
+    public boolean isSatisfiedBy(Signature signature, EvaluationContext context) {
+        if (signature.containsAll(getRequirements())) {
+            return true;
+        }
+        for (String var : requiredVariables) {
+            if (context.lookupVariable(var) == null) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Collects the variables an expression node requires. These are variable references
+     * that are evaluated to the placeholder value itself, that are the head of a
+     * property chain, or that are passed to one of the built-in functions. A missing
+     * value would make the evaluation result in {@code null} or fail. All other
+     * references are ignored, as the expression might handle missing values.
+     *
+     * @param node
+     *            {@link SpelNode} to check
+     * @param required
+     *            Set to add the required variables to
+     */
+    private static void collectRequirements(SpelNode node, Set<String> required) {
+        if (node instanceof VariableReference) {
+            String var = node.toStringAST().substring(1);
+            if (!"root".equals(var) && !"this".equals(var)) {
+                required.add('#' + var);
+            }
+        } else if (node instanceof CompoundExpression) {
+            collectRequirements(node.getChild(0), required);
+        } else if (node instanceof FunctionReference) {
+            String ast = node.toStringAST();
+            String function = ast.substring(1, ast.indexOf('('));
+            if (NULL_REJECTING_FUNCTIONS.contains(function)) {
+                for (int ix = 0; ix < node.getChildCount(); ix++) {
+                    collectRequirements(node.getChild(ix), required);
+                }
+            }
+        }
+    }
+
+    /**
+     * Selects if the placeholder expressions are compiled to bytecode after their first
+     * successful evaluation. This is enabled by default. If compiled code fails, the
+     * expression falls back to interpretation.
+     *
+     * @param compileExpressions
+     *            {@code true} to compile the expressions
+     */
+    void setCompileExpressions(boolean compileExpressions) {
+        this.compileExpressions = compileExpressions;
+    }
+
+    /**
+     * Returns the number of placeholder evaluations that were done by compiled code.
+     *
+     * @return Number of compiled evaluations
+     */
+    public long getCompiledEvaluations() {
+        PlaceholderExpression[] placeholders = expressions;
+        long result = 0;
+        if (placeholders != null) {
+            for (PlaceholderExpression pe : placeholders) {
+                result += pe.getCompiledCount();
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the number of placeholder evaluations that were interpreted.
+     *
+     * @return Number of interpreted evaluations
+     */
+    public long getInterpretedEvaluations() {
+        PlaceholderExpression[] placeholders = expressions;
+        long result = 0;
+        if (placeholders != null) {
+            for (PlaceholderExpression pe : placeholders) {
+                result += pe.getInterpretedCount();
+            }
+        }
+        return result;
     }
 
     /**
@@ -176,6 +444,72 @@ public class ViewPattern implements Comparable<ViewPattern> {
         return qualifier;
     }
 
+    /**
+     * Returns the path segments of this pattern. A segment is a part of the pattern
+     * between two '/' delimiters. Constant segments are returned as they are, segments
+     * containing at least one placeholder are returned as {@code null}.
+     *
+     * @return Array of path segments, never empty
+     */
+    String[] getSegments() {
+        return segments;
+    }
+
+    /**
+     * Checks if this pattern and the other pattern can never match the same URL. The
+     * check is conservative. If {@code false} is returned, the patterns still might
+     * never match the same URL.
+     *
+     * @param other
+     *            other {@link ViewPattern}
+     * @return {@code true} if both patterns never match the same URL
+     */
+    boolean isDisjoint(ViewPattern other) {
+        if (segments.length != other.segments.length) {
+            return true;
+        }
+
+        for (int ix = 0; ix < segments.length; ix++) {
+            if (segments[ix] != null && other.segments[ix] != null) {
+                if (!segments[ix].equals(other.segments[ix])) {
+                    return true;
+                }
+            } else if (segments[ix] != null) {
+                if (!other.matchesSegment(ix, segments[ix])) {
+                    return true;
+                }
+            } else if (other.segments[ix] != null) {
+                if (!matchesSegment(ix, other.segments[ix])) {
+                    return true;
+                }
+            } else {
+                String prefix = segmentPrefixes[ix];
+                String otherPrefix = other.segmentPrefixes[ix];
+                String suffix = segmentSuffixes[ix];
+                String otherSuffix = other.segmentSuffixes[ix];
+                if (!(prefix.startsWith(otherPrefix) || otherPrefix.startsWith(prefix))
+                        || !(suffix.endsWith(otherSuffix) || otherSuffix.endsWith(suffix))) {
+                    return true;
+                }
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Roughly checks if a constant segment could be matched by the segment of this
+     * pattern with the given index. Only the constant prefix and suffix of the segment
+     * are checked.
+     */
+    private boolean matchesSegment(int index, String segment) {
+        String prefix = segmentPrefixes[index];
+        String suffix = segmentSuffixes[index];
+        return segment.length() >= prefix.length() + suffix.length()
+                && segment.startsWith(prefix)
+                && segment.endsWith(suffix);
+    }
+
     /**
      * Matches the requested URL against this {@link ViewPattern}.
      *
@@ -185,7 +519,7 @@ public class ViewPattern implements Comparable<ViewPattern> {
      *         a candidate for rendering
      */
     public boolean matches(String path) {
-        return regEx.matcher(path).matches();
+        return path.startsWith(fixedParts[0]) && matchPart(path, fixedParts[0].length(), 0, null);
     }
 
     /**
@@ -194,10 +528,47 @@ public class ViewPattern implements Comparable<ViewPattern> {
      *
      * @param path
      *            the requested URL to be resolved
-     * @return Map containing the placeholder names and its values
+     * @return Map containing the placeholder names and its values, or {@code null} if
+     *         the URL does not match. The map is read-only.
      */
     public Map<String, String> resolve(String path) {
-        Matcher m = regEx.matcher(path);
+        if (!path.startsWith(fixedParts[0])) {
+            return null;
+        }
+
+        int[] spans = new int[parameter.size() * 2];
+        if (!matchPart(path, fixedParts[0].length(), 0, spans)) {
+            return null;
+        }
+
+        if (keys.length == 0) {
+            return Collections.emptyMap();
+        }
+
+        if (keys.length != parameter.size()) {
+            // Some placeholder names are used more than once
+            int[] keySpans = new int[keys.length * 2];
+            for (int ix = 0; ix < keys.length; ix++) {
+                keySpans[ix * 2] = spans[keyIndex[ix] * 2];
+                keySpans[ix * 2 + 1] = spans[keyIndex[ix] * 2 + 1];
+            }
+            spans = keySpans;
+        }
+
+        return new PathParts(path, keys, spans, keyDecode);
+    }
+
+    /**
+     * Resolves a requested URL path, using the regular expression of this pattern. The
+     * result is the same as of {@link #resolve(String)}.
+     *
+     * @param path
+     *            the requested URL to be resolved
+     * @return Map containing the placeholder names and its values, or {@code null} if
+     *         the URL does not match. The map is read-only.
+     */
+    Map<String, String> resolveRegEx(String path) {
+        Matcher m = getRegEx().matcher(path);
         if (!m.matches()) {
             return null;
         }
@@ -207,12 +578,36 @@ public class ViewPattern implements Comparable<ViewPattern> {
                     + " does not match parameter count " + parameter.size());
         }
 
-        // TODO: only use decode when #encode() was used
-        return IntStream.range(0, parameter.size()).collect(
-                    HashMap::new,
-                    (map, ix) -> map.put(parameter.get(ix), PathUtils.decode(m.group(ix + 1))),
-                    Map::putAll
-        );
+        return resolve(path, m, 0);
+    }
+
+    /**
+     * Resolves the path parts from a {@link Matcher} that successfully matched the
+     * regular expression of this {@link ViewPattern}.
+     *
+     * @param path
+     *            the requested URL that was matched
+     * @param m
+     *            {@link Matcher} that matched
+     * @param offset
+     *            Index of the group preceding the first placeholder group of this
+     *            pattern. 0 if the {@link Matcher} only uses this pattern's regular
+     *            expression.
+     * @return Map containing the placeholder names and its values
+     */
+    Map<String, String> resolve(String path, Matcher m, int offset) {
+        if (keys.length == 0) {
+            return Collections.emptyMap();
+        }
+
+        int[] spans = new int[keys.length * 2];
+        for (int ix = 0; ix < keys.length; ix++) {
+            int group = offset + keyIndex[ix] + 1;
+            spans[ix * 2] = m.start(group);
+            spans[ix * 2 + 1] = m.end(group);
+        }
+
+        return new PathParts(path, keys, spans, keyDecode);
     }
 
     /**
@@ -227,101 +622,295 @@ public class ViewPattern implements Comparable<ViewPattern> {
      *         contain all necessary data for building the URL
      */
     public String evaluate(EvaluationContext context, PathContext data) {
-        StringBuilder sb = new StringBuilder();
-        for (Expression expr : expression) {
-            String value = expr.getValue(context, data, String.class);
+        String[] values = evaluatePlaceholders(context, data);
+        if (values == null) {
+            return null;
+        }
+
+        StringBuilder sb = new StringBuilder(pattern.length() + 16 * values.length);
+        try {
+            writePath(sb, values);
+        } catch (IOException ex) {
+            // StringBuilder never throws an IOException
+            throw new IllegalStateException(ex);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Evaluates the given {@link EvaluationContext} and writes an URL to the appropriate
+     * view. Nothing is written if the {@link PathContext} did not contain all necessary
+     * data for building the URL.
+     *
+     * @param context
+     *            {@link EvaluationContext} to be used
+     * @param data
+     *            {@link PathContext} containing all data required for building the URL
+     * @param prefix
+     *            Prefix to be written before the URL, it is written unchanged
+     * @param out
+     *            {@link Appendable} to write the URL to
+     * @return {@code true} if the URL was written, {@code false} if the
+     *         {@link PathContext} did not contain all necessary data
+     */
+    public boolean evaluate(EvaluationContext context, PathContext data, CharSequence prefix,
+            Appendable out) throws IOException {
+        String[] values = evaluatePlaceholders(context, data);
+        if (values == null) {
+            return false;
+        }
+
+        out.append(prefix);
+        writePath(out, values);
+        return true;
+    }
+
+    /**
+     * Evaluates all placeholders.
+     *
+     * @param context
+     *            {@link EvaluationContext} to be used
+     * @param data
+     *            {@link PathContext} containing all data required for building the URL
+     * @return Values of all placeholders, or {@code null} if a placeholder resolved to
+     *         {@code null}
+     */
+    private String[] evaluatePlaceholders(EvaluationContext context, PathContext data) {
+        PlaceholderExpression[] placeholders = getPlaceholderExpressions();
+        boolean compile = compileExpressions;
+        String[] values = new String[placeholders.length];
+        for (int ix = 0; ix < placeholders.length; ix++) {
+            String value = placeholders[ix].getValue(context, data, compile);
             if (value == null) {
                 // A part resolved to null, so this ViewPattern is unable
                 // to build a path from the given PathData.
                 return null;
             }
-            sb.append(value);
+            values[ix] = value;
         }
+        return values;
+    }
 
-        // Remove ugly double slashes
-        int pos;
-        while ((pos = sb.indexOf("//")) >= 0) {
-            sb.deleteCharAt(pos);
+    /**
+     * Writes the path, with the constant parts and the given placeholder values. Ugly
+     * double slashes are removed on the fly.
+     *
+     * @param out
+     *            {@link Appendable} to write to
+     * @param values
+     *            Placeholder values
+     */
+    private void writePath(Appendable out, String[] values) throws IOException {
+        boolean slash = appendNormalized(out, fixedParts[0], false);
+        for (int ix = 0; ix < values.length; ix++) {
+            slash = appendNormalized(out, values[ix], slash);
+            slash = appendNormalized(out, fixedParts[ix + 1], slash);
         }
+    }
 
-        return sb.toString();
+    /**
+     * Appends a string, skipping all slashes that directly follow another slash.
+     *
+     * @param out
+     *            {@link Appendable} to write to
+     * @param str
+     *            String to append
+     * @param slash
+     *            {@code true} if the last character written was a slash
+     * @return {@code true} if the last character written is a slash now
+     */
+    private static boolean appendNormalized(Appendable out, String str, boolean slash)
+    throws IOException {
+        boolean lastSlash = slash;
+        int start = 0;
+        for (int ix = 0; ix < str.length(); ix++) {
+            if (str.charAt(ix) == '/') {
+                if (lastSlash) {
+                    if (ix > start) {
+                        out.append(str, start, ix);
+                    }
+                    start = ix + 1;
+                }
+                lastSlash = true;
+            } else {
+                lastSlash = false;
+            }
+        }
+        if (start < str.length()) {
+            out.append(str, start, str.length());
+        }
+        return lastSlash;
+    }
+
+    /**
+     * Matches the remaining URL against the placeholder with the given index, and all
+     * the placeholders and constant parts following it.
+     * <p>
+     * This is a replacement for the regular expression, with the same semantics. A
+     * placeholder matches any number of characters except '/'. If there are multiple
+     * ways to match, the placeholder takes as many characters as possible.
+     *
+     * @param path
+     *            the requested URL
+     * @param pos
+     *            Position in the URL where the placeholder starts
+     * @param index
+     *            Index of the placeholder
+     * @param spans
+     *            Array to store the start and end position of each placeholder in, or
+     *            {@code null} if not needed
+     * @return {@code true} if the URL matches
+     */
+    private boolean matchPart(String path, int pos, int index, @Nullable int[] spans) {
+        int length = path.length();
+
+        if (index == parameter.size()) {
+            // Constant parts are all matched, there must be nothing left
+            return pos == length;
+        }
+
+        String next = fixedParts[index + 1];
+        int limit = path.indexOf('/', pos);
+        if (limit < 0) {
+            limit = length;
+        }
+
+        int end;
+        if (index + 1 == parameter.size()) {
+            // Last placeholder, the constant part must close the URL
+            end = length - next.length();
+            if (end < pos || end > limit || !path.startsWith(next, end)) {
+                return false;
+            }
+            setSpan(spans, index, pos, end);
+            return true;
+        }
+
+        if (!next.isEmpty() && next.charAt(0) == '/') {
+            // The placeholder must end at the next '/'
+            if (!path.startsWith(next, limit)) {
+                return false;
+            }
+            setSpan(spans, index, pos, limit);
+            return matchPart(path, limit + next.length(), index + 1, spans);
+        }
+
+        for (end = limit; end >= pos; end--) {
+            if (path.startsWith(next, end)
+                    && matchPart(path, end + next.length(), index + 1, spans)) {
+                setSpan(spans, index, pos, end);
+                return true;
+            }
+        }
+
+        return false;
     }
 
     /**
-     * Compiles a view pattern. Generates a parameter list, a list of expressions for
-     * building URLs to this view, and a regular expression for matching URLs against this
-     * view pattern.
+     * Stores the start and end position of a placeholder value.
+     */
+    private static void setSpan(@Nullable int[] spans, int index, int start, int end) {
+        if (spans != null) {
+            spans[index * 2] = start;
+            spans[index * 2 + 1] = end;
+        }
+    }
+
+    /**
+     * Compiles a view pattern. Generates a parameter list, a list of the constant parts
+     * between the placeholders, and a regular expression for matching URLs against this
+     * view pattern. The placeholder expressions are parsed later, when they are needed
+     * for building a URL.
      *
      * @param pstr
      *            the view pattern
      * @param pattern
      *            {@link StringBuilder} to assemble the regular expression in
-     * @param expList
-     *            List of {@link Expression} to assemble expressions in
      * @param paramList
      *            List to assemble parameters in
+     * @param fixedList
+     *            List to assemble the constant parts between the placeholders in
      */
     private void compilePattern(String pstr, StringBuilder pattern,
-            List<Expression> expList, List<String> paramList) {
-        ExpressionParser parser = new SpelExpressionParser();
+            List<String> paramList, List<String> fixedList) {
         int previous = 0;
 
         Matcher m = PATH_PART.matcher(pstr);
         while (m.find()) {
             String fixedPart = pstr.substring(previous, m.start());
-            if (fixedPart.indexOf('\'') >= 0) {
-                throw new IllegalArgumentException("path parameters must not contain \"'\"");
-            }
-
             String expressionPart = m.group(1);
 
             pattern.append(Pattern.quote(fixedPart));
             pattern.append("([^/]*)");
 
             paramList.add(expressionPart);
-
-            expList.add(parser.parseExpression('\'' + fixedPart + '\''));
-            expList.add(parser.parseExpression(expressionPart));
+            fixedList.add(fixedPart);
 
             previous = m.end();
         }
 
         String postPart = pstr.substring(previous);
         pattern.append(Pattern.quote(postPart));
-        expList.add(parser.parseExpression('\'' + postPart + '\''));
+        fixedList.add(postPart);
     }
 
     /**
-     * Computes the weight of the pattern. The weight is computed by a score where every
-     * path delimiter '/' counts 10, constant character counts 5 and every path parameter
-     * counts 1.
+     * Splits a view pattern into its path segments. Since placeholders never match a
+     * '/', a URL can only match this pattern if it has the same number of segments.
      *
      * @param pstr
-     *            view pattern to weight
-     * @return weight of this pattern
-     */
-    private int computeWeight(String pstr) {
-        int count = 0;
-        int pos = 0;
-        while (pos < pstr.length()) {
-            char ch = pstr.charAt(pos);
-            if (ch == '/') {
-                count += 10;
-
-            } else if (ch == '$' && pos + 1 < pstr.length() && pstr.charAt(pos + 1) == '{') {
-                int end = pstr.indexOf('}', pos);
-                if (end >= 0) {
-                    pos = end;
-                    count += 1;
+     *            the view pattern
+     * @return Three arrays of the same length. The first one contains the constant
+     *         segments, with {@code null} for segments containing placeholders. The
+     *         second and third one contain the constant prefix and suffix of each
+     *         segment, which is the entire segment if it is constant.
+     */
+    private static String[][] splitSegments(String pstr) {
+        List<String> result = new ArrayList<>();
+        List<String> prefixes = new ArrayList<>();
+        List<String> suffixes = new ArrayList<>();
+        StringBuilder segment = new StringBuilder();
+        String prefix = null;
+        int previous = 0;
+
+        Matcher m = PATH_PART.matcher(pstr);
+        while (true) {
+            boolean found = m.find();
+            int end = found ? m.start() : pstr.length();
+
+            for (int ix = previous; ix < end; ix++) {
+                char ch = pstr.charAt(ix);
+                if (ch == '/') {
+                    result.add(prefix != null ? null : segment.toString());
+                    prefixes.add(prefix != null ? prefix : segment.toString());
+                    suffixes.add(segment.toString());
+                    segment.setLength(0);
+                    prefix = null;
+                } else {
+                    segment.append(ch);
                 }
+            }
 
-            } else {
-                count += 5;
+            if (!found) {
+                break;
             }
 
-            pos++;
+            if (prefix == null) {
+                prefix = segment.toString();
+            }
+            segment.setLength(0);
+            previous = m.end();
         }
-        return count;
+
+        result.add(prefix != null ? null : segment.toString());
+        prefixes.add(prefix != null ? prefix : segment.toString());
+        suffixes.add(segment.toString());
+
+        return new String[][] {
+            result.toArray(new String[result.size()]),
+            prefixes.toArray(new String[prefixes.size()]),
+            suffixes.toArray(new String[suffixes.size()]),
+        };
     }
 
     @Override
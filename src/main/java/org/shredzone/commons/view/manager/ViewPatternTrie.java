@@ -0,0 +1,507 @@
+/*
+ * Shredzone Commons
+ *
+ * Copyright (C) 2012 Richard "Shred" Körber
+ *   http://commons.shredzone.org
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Library General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.shredzone.commons.view.manager;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * A trie of {@link ViewPattern}, with one level per path segment. It is used for quickly
+ * finding the {@link ViewPattern} that handles a requested URL.
+ * <p>
+ * Constant segments are stored as hashed children of a node, while segments containing
+ * placeholders are stored as a wildcard child. A lookup follows the constant child and
+ * the wildcard child of each node, so only the patterns with a fitting segment structure
+ * are matched against the URL. The cost of a lookup depends on the number of segments
+ * of the URL, but not on the number of patterns.
+ * <p>
+ * The patterns of a leaf are matched by {@link ViewPattern#resolve(String)}, in the
+ * order of precedence. Optionally the regular expressions of the patterns can be used
+ * instead. If a leaf holds more than one pattern, their regular expressions are then
+ * combined to a single alternation, in the order of precedence. A single match gives
+ * the winning pattern and its placeholder groups.
+ * <p>
+ * If more than one pattern matches, the one that comes first in the pattern order
+ * given on construction is returned.
+ * <p>
+ * When matching by {@link ViewPattern#resolve(String)}, each leaf with more than one
+ * pattern counts its hits. From time to time, the patterns are reordered so the most
+ * frequently hit patterns are tried first. A pattern is only moved in front of a
+ * pattern with higher precedence if both patterns can never match the same URL, so the
+ * result of a lookup is not changed by the reordering.
+ * <p>
+ * {@link ViewPatternTrie ViewPatternTries} are thread safe. Their structure is
+ * immutable, only the hit counters and the order of trial are changed at runtime.
+ *
+ * @author Richard "Shred" Körber
+ */
+@ParametersAreNonnullByDefault
+@ThreadSafe
+class ViewPatternTrie {
+    private static final int REORDER_INTERVAL = 1024;
+
+    private final Node root = new Node();
+    private final boolean regExMatching;
+
+    /**
+     * Creates a new {@link ViewPatternTrie}.
+     *
+     * @param patterns
+     *            {@link ViewPattern} to be added, in the order of precedence
+     */
+    public ViewPatternTrie(List<ViewPattern> patterns) {
+        this(patterns, false);
+    }
+
+    /**
+     * Creates a new {@link ViewPatternTrie}.
+     *
+     * @param patterns
+     *            {@link ViewPattern} to be added, in the order of precedence
+     * @param regExMatching
+     *            {@code true} to match URLs by the regular expressions of the patterns
+     */
+    public ViewPatternTrie(List<ViewPattern> patterns, boolean regExMatching) {
+        this.regExMatching = regExMatching;
+        int rank = 0;
+        for (ViewPattern vp : patterns) {
+            root.add(vp, vp.getSegments(), 0, rank++);
+        }
+        root.freeze(regExMatching);
+    }
+
+    /**
+     * Resolves a requested URL path.
+     *
+     * @param path
+     *            the requested URL to be resolved
+     * @return {@link ViewMatch} of the {@link ViewPattern} taking precedence, or
+     *         {@code null} if no {@link ViewPattern} matches the URL
+     */
+    public ViewMatch resolve(String path) {
+        Lookup lookup = new Lookup(path, regExMatching);
+        lookup.search(root, 0);
+        return lookup.pattern != null ? new ViewMatch(lookup.pattern, lookup.pathParts) : null;
+    }
+
+    /**
+     * Returns the statistics of all leaves that hold more than one pattern. Statistics
+     * are not collected if regular expressions are used for matching.
+     *
+     * @return List of {@link BucketStatistics}, may be empty
+     */
+    public List<BucketStatistics> getStatistics() {
+        List<BucketStatistics> result = new ArrayList<>();
+        root.collectStatistics(result);
+        return result;
+    }
+
+    /**
+     * A single node of the trie.
+     */
+    private static class Node {
+        private Map<String, Node> literalMap = new HashMap<>();
+        private List<ViewPattern> patternList = new ArrayList<>();
+        private List<Integer> rankList = new ArrayList<>();
+
+        private String[] keys;
+        private Node[] children;
+        private Node wildcard;
+        private ViewPattern[] patterns;
+        private int[] ranks;
+        private Pattern combined;
+        private int[] groups;
+        private int minRank = Integer.MAX_VALUE;
+
+        private int[][] predecessors;
+        private LongAdder[] hits;
+        private LongAdder lookups;
+        private LongAdder reorders;
+        private volatile int[] order;
+        private int countdown = REORDER_INTERVAL;
+
+        /**
+         * Adds a {@link ViewPattern} to this node or one of its children.
+         */
+        private void add(ViewPattern vp, String[] segments, int depth, int rank) {
+            minRank = Math.min(minRank, rank);
+
+            if (depth == segments.length) {
+                patternList.add(vp);
+                rankList.add(rank);
+                return;
+            }
+
+            Node child;
+            String segment = segments[depth];
+            if (segment != null) {
+                child = literalMap.computeIfAbsent(segment, it -> new Node());
+            } else {
+                if (wildcard == null) {
+                    wildcard = new Node();
+                }
+                child = wildcard;
+            }
+            child.add(vp, segments, depth + 1, rank);
+        }
+
+        /**
+         * Converts the node into its compact lookup form, after all patterns were added.
+         * The constant children are stored in an open addressing hash table, so they can
+         * be looked up without creating a substring of the URL.
+         */
+        private void freeze(boolean regExMatching) {
+            int size = 1;
+            while (size < literalMap.size() * 2) {
+                size <<= 1;
+            }
+
+            keys = new String[size];
+            children = new Node[size];
+            for (Map.Entry<String, Node> entry : literalMap.entrySet()) {
+                String key = entry.getKey();
+                int ix = hash(key, 0, key.length()) & (size - 1);
+                while (keys[ix] != null) {
+                    ix = (ix + 1) & (size - 1);
+                }
+                keys[ix] = key;
+                children[ix] = entry.getValue();
+                entry.getValue().freeze(regExMatching);
+            }
+
+            if (wildcard != null) {
+                wildcard.freeze(regExMatching);
+            }
+
+            patterns = patternList.toArray(new ViewPattern[patternList.size()]);
+            ranks = rankList.stream().mapToInt(Integer::intValue).toArray();
+            if (patterns.length > 1) {
+                if (regExMatching) {
+                    combine();
+                } else {
+                    prepareReordering();
+                }
+            }
+
+            literalMap = null;
+            patternList = null;
+            rankList = null;
+        }
+
+        /**
+         * Combines the regular expressions of all patterns of this node to a single
+         * alternation. Each alternative is enclosed in a group, so the winning pattern
+         * can be found by the first group that took part in the match. The placeholder
+         * groups of that pattern follow its enclosing group.
+         */
+        private void combine() {
+            StringBuilder sb = new StringBuilder();
+            groups = new int[patterns.length];
+
+            int group = 1;
+            for (int ix = 0; ix < patterns.length; ix++) {
+                if (ix > 0) {
+                    sb.append('|');
+                }
+                sb.append('(').append(patterns[ix].getRegExSource()).append(')');
+                groups[ix] = group;
+                group += patterns[ix].getParameters().size() + 1;
+            }
+
+            combined = Pattern.compile(sb.toString());
+        }
+
+        /**
+         * Prepares the hit counters and the initial order of trial. For each pattern,
+         * all patterns with higher precedence that might match the same URL are
+         * collected. They must always be tried first.
+         */
+        private void prepareReordering() {
+            predecessors = new int[patterns.length][];
+            hits = new LongAdder[patterns.length];
+            order = new int[patterns.length];
+
+            for (int ix = 0; ix < patterns.length; ix++) {
+                int[] pred = new int[ix];
+                int count = 0;
+                for (int jx = 0; jx < ix; jx++) {
+                    if (!patterns[ix].isDisjoint(patterns[jx])) {
+                        pred[count++] = jx;
+                    }
+                }
+                predecessors[ix] = Arrays.copyOf(pred, count);
+                hits[ix] = new LongAdder();
+                order[ix] = ix;
+            }
+
+            lookups = new LongAdder();
+            reorders = new LongAdder();
+        }
+
+        /**
+         * Records a lookup in this leaf, and reorders the patterns if due.
+         *
+         * @param hit
+         *            index of the pattern that matched, or -1 if there was no match
+         */
+        private void record(int hit) {
+            lookups.increment();
+            if (hit >= 0) {
+                hits[hit].increment();
+            }
+
+            // Racy by intention. At worst, a reordering is done twice or a bit later.
+            if (--countdown <= 0) {
+                countdown = REORDER_INTERVAL;
+                reorder();
+            }
+        }
+
+        /**
+         * Reorders the patterns by their hits. The pattern with the most hits is tried
+         * first, unless it has predecessors that were not tried yet.
+         */
+        private void reorder() {
+            int size = patterns.length;
+            long[] current = new long[size];
+            for (int ix = 0; ix < size; ix++) {
+                current[ix] = hits[ix].sum();
+            }
+
+            int[] result = new int[size];
+            boolean[] placed = new boolean[size];
+            for (int pos = 0; pos < size; pos++) {
+                int best = -1;
+                for (int ix = 0; ix < size; ix++) {
+                    if (!placed[ix] && isReady(ix, placed)
+                            && (best < 0 || current[ix] > current[best])) {
+                        best = ix;
+                    }
+                }
+                result[pos] = best;
+                placed[best] = true;
+            }
+
+            if (!Arrays.equals(result, order)) {
+                order = result;
+                reorders.increment();
+            }
+        }
+
+        /**
+         * Checks if all predecessors of the pattern have been placed.
+         */
+        private boolean isReady(int index, boolean[] placed) {
+            for (int pred : predecessors[index]) {
+                if (!placed[pred]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Collects the statistics of this node and all its children.
+         */
+        private void collectStatistics(List<BucketStatistics> result) {
+            if (hits != null) {
+                int[] current = order;
+                List<ViewPattern> vps = new ArrayList<>(current.length);
+                long[] counts = new long[current.length];
+                for (int ix = 0; ix < current.length; ix++) {
+                    vps.add(patterns[current[ix]]);
+                    counts[ix] = hits[current[ix]].sum();
+                }
+                result.add(new BucketStatistics(vps, counts, lookups.sum(), reorders.sum()));
+            }
+
+            for (Node child : children) {
+                if (child != null) {
+                    child.collectStatistics(result);
+                }
+            }
+
+            if (wildcard != null) {
+                wildcard.collectStatistics(result);
+            }
+        }
+
+        /**
+         * Finds the constant child for the given segment.
+         *
+         * @param path
+         *            requested URL
+         * @param start
+         *            segment start in the URL
+         * @param end
+         *            segment end in the URL
+         * @return child node, or {@code null} if there is no constant child for that
+         *         segment
+         */
+        private Node findLiteral(String path, int start, int end) {
+            int len = end - start;
+            int mask = keys.length - 1;
+            int ix = hash(path, start, end) & mask;
+            String key;
+            while ((key = keys[ix]) != null) {
+                if (key.length() == len && path.regionMatches(start, key, 0, len)) {
+                    return children[ix];
+                }
+                ix = (ix + 1) & mask;
+            }
+            return null;
+        }
+
+        /**
+         * Computes the hash of a part of a string, without creating a substring.
+         */
+        private static int hash(String str, int start, int end) {
+            int h = 0;
+            for (int ix = start; ix < end; ix++) {
+                h = 31 * h + str.charAt(ix);
+            }
+            return h ^ (h >>> 16);
+        }
+    }
+
+    /**
+     * Keeps the state of a single lookup.
+     */
+    private static class Lookup {
+        private final String path;
+        private final boolean regExMatching;
+        private ViewPattern pattern;
+        private Map<String, String> pathParts;
+        private int rank = Integer.MAX_VALUE;
+
+        private Lookup(String path, boolean regExMatching) {
+            this.path = path;
+            this.regExMatching = regExMatching;
+        }
+
+        /**
+         * Searches the children of the node for the segment starting at the given
+         * position.
+         */
+        private void search(Node node, int start) {
+            int end = path.indexOf('/', start);
+            boolean last = end < 0;
+            if (last) {
+                end = path.length();
+            }
+
+            Node literal = node.findLiteral(path, start, end);
+            if (literal != null) {
+                visit(literal, end, last);
+            }
+
+            if (node.wildcard != null) {
+                visit(node.wildcard, end, last);
+            }
+        }
+
+        /**
+         * Visits a child node. If the last segment was reached, the patterns of that
+         * child are matched against the URL. Otherwise the search continues with the
+         * next segment.
+         */
+        private void visit(Node child, int end, boolean last) {
+            if (child.minRank >= rank) {
+                // Nothing in there that could take precedence over our current match
+                return;
+            }
+
+            if (!last) {
+                search(child, end + 1);
+                return;
+            }
+
+            if (child.combined != null) {
+                Matcher m = child.combined.matcher(path);
+                if (!m.matches()) {
+                    return;
+                }
+
+                int ix = 0;
+                while (m.start(child.groups[ix]) < 0) {
+                    ix++;
+                }
+
+                if (child.ranks[ix] < rank) {
+                    pattern = child.patterns[ix];
+                    pathParts = pattern.resolve(path, m, child.groups[ix]);
+                    rank = child.ranks[ix];
+                }
+                return;
+            }
+
+            if (child.hits != null) {
+                visitAdaptive(child);
+                return;
+            }
+
+            for (int ix = 0; ix < child.patterns.length && child.ranks[ix] < rank; ix++) {
+                ViewPattern vp = child.patterns[ix];
+                Map<String, String> parts = regExMatching ? vp.resolveRegEx(path) : vp.resolve(path);
+                if (parts != null) {
+                    pattern = vp;
+                    pathParts = parts;
+                    rank = child.ranks[ix];
+                    break;
+                }
+            }
+        }
+
+        /**
+         * Matches the patterns of a leaf in its current order of trial. A pattern is
+         * only tried before a pattern of higher precedence if both can never match the
+         * same URL, so the first match is also the match with the highest precedence.
+         */
+        private void visitAdaptive(Node child) {
+            int hit = -1;
+            for (int ix : child.order) {
+                if (child.ranks[ix] >= rank) {
+                    continue;
+                }
+
+                Map<String, String> parts = child.patterns[ix].resolve(path);
+                if (parts != null) {
+                    pattern = child.patterns[ix];
+                    pathParts = parts;
+                    rank = child.ranks[ix];
+                    hit = ix;
+                    break;
+                }
+            }
+            child.record(hit);
+        }
+    }
+
+}
@@ -0,0 +1,125 @@
+/*
+ * Shredzone Commons
+ *
+ * Copyright (C) 2012 Richard "Shred" Körber
+ *   http://commons.shredzone.org
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Library General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.shredzone.commons.view.manager;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+import javax.annotation.concurrent.Immutable;
+
+/**
+ * A precomputed definition of a single view. It contains everything that is needed for
+ * building a {@link ViewPattern} and its {@link ViewInvoker}, without scanning the view
+ * handler class.
+ * <p>
+ * {@link ViewRoute ViewRoutes} are immutable.
+ *
+ * @author Richard "Shred" Körber
+ */
+@ParametersAreNonnullByDefault
+@Immutable
+public class ViewRoute {
+
+    private final String name;
+    private final String pattern;
+    private final String[] signature;
+    private final String qualifier;
+    private final int weight;
+    private final String methodName;
+    private final Class<?>[] parameterTypes;
+    private final ViewHandlerFunction function;
+
+    /**
+     * Creates a new {@link ViewRoute}.
+     *
+     * @param name
+     *            View name
+     * @param pattern
+     *            View pattern
+     * @param signature
+     *            Signature of the view, may be empty
+     * @param qualifier
+     *            Qualifier of the view, or {@code null}
+     * @param weight
+     *            Weight of the view pattern
+     * @param methodName
+     *            Name of the view handler method
+     * @param parameterTypes
+     *            Parameter types of the view handler method
+     * @param function
+     *            {@link ViewHandlerFunction} that invokes the view handler method, or
+     *            {@code null} to invoke it by reflection
+     */
+    public ViewRoute(String name, String pattern, String[] signature, @Nullable String qualifier,
+            int weight, String methodName, Class<?>[] parameterTypes,
+            @Nullable ViewHandlerFunction function) {
+        this.name = name;
+        this.pattern = pattern;
+        this.signature = signature.clone();
+        this.qualifier = qualifier;
+        this.weight = weight;
+        this.methodName = methodName;
+        this.parameterTypes = parameterTypes.clone();
+        this.function = function;
+    }
+
+    /**
+     * Gets the view name.
+     */
+    public @Nonnull String getName() { return name; }
+
+    /**
+     * Gets the view pattern.
+     */
+    public @Nonnull String getPattern() { return pattern; }
+
+    /**
+     * Gets the signature of the view. It is empty if the view has no signature.
+     */
+    public @Nonnull String[] getSignature() { return signature.clone(); }
+
+    /**
+     * Gets the qualifier of the view, or {@code null} if there is none.
+     */
+    public @Nullable String getQualifier() { return qualifier; }
+
+    /**
+     * Gets the weight of the view pattern.
+     */
+    public int getWeight() { return weight; }
+
+    /**
+     * Gets the name of the view handler method.
+     */
+    public @Nonnull String getMethodName() { return methodName; }
+
+    /**
+     * Gets the parameter types of the view handler method.
+     */
+    public @Nonnull Class<?>[] getParameterTypes() { return parameterTypes.clone(); }
+
+    /**
+     * Gets the {@link ViewHandlerFunction}, or {@code null} if the view handler method
+     * is to be invoked by reflection.
+     */
+    public @Nullable ViewHandlerFunction getFunction() { return function; }
+
+}
@@ -0,0 +1,51 @@
+/*
+ * Shredzone Commons
+ *
+ * Copyright (C) 2012 Richard "Shred" Körber
+ *   http://commons.shredzone.org
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Library General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.shredzone.commons.view.manager;
+
+import java.util.List;
+
+import javax.annotation.Nonnull;
+
+/**
+ * A table of all views of a view handler class. Implementations are generated by the
+ * {@code ViewRouteProcessor} at compile time. They are named like the view handler
+ * class, with a "{@code _ViewRoutes}" suffix.
+ * <p>
+ * If a {@link ViewRoutes} class is found for a view handler, {@link ViewManager} uses it
+ * instead of scanning the view handler class by reflection.
+ *
+ * @author Richard "Shred" Körber
+ */
+public interface ViewRoutes {
+
+    /**
+     * Suffix of the generated class name.
+     */
+    String SUFFIX = "_ViewRoutes";
+
+    /**
+     * Returns all views of the view handler class.
+     *
+     * @return List of {@link ViewRoute}, in the order of declaration
+     */
+    @Nonnull List<ViewRoute> getRoutes();
+
+}
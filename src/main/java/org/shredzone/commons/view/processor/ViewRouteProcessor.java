@@ -0,0 +1,300 @@
+/*
+ * Shredzone Commons
+ *
+ * Copyright (C) 2012 Richard "Shred" Körber
+ *   http://commons.shredzone.org
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Library General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.shredzone.commons.view.processor;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.lang.annotation.Annotation;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+
+import org.shredzone.commons.view.annotation.View;
+import org.shredzone.commons.view.annotation.ViewGroup;
+import org.shredzone.commons.view.annotation.ViewHandler;
+import org.shredzone.commons.view.manager.ViewManager;
+import org.shredzone.commons.view.manager.ViewRoutes;
+import org.shredzone.commons.view.util.ViewRouteUtils;
+
+/**
+ * An annotation processor that generates a {@link ViewRoutes} class for each class
+ * annotated with {@link ViewHandler}. The generated class contains the precomputed
+ * views of the view handler, and invokes the view handler methods directly. If it is
+ * present, {@link ViewManager} does not need to scan the view handler by reflection.
+ * <p>
+ * The processor is optional, and must be enabled explicitly, e.g. by the
+ * {@code annotationProcessors} setting of the maven-compiler-plugin.
+ * <p>
+ * View handlers that cannot be accessed from a generated class in the same package
+ * (e.g. private nested classes) are skipped, and are scanned by reflection at runtime.
+ *
+ * @author Richard "Shred" Körber
+ */
+@ParametersAreNonnullByDefault
+@SupportedAnnotationTypes("org.shredzone.commons.view.annotation.ViewHandler")
+public class ViewRouteProcessor extends AbstractProcessor {
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        for (Element element : roundEnv.getElementsAnnotatedWith(ViewHandler.class)) {
+            if (element.getKind() != ElementKind.CLASS) {
+                continue;
+            }
+
+            TypeElement type = (TypeElement) element;
+            if (!isAccessible(type)) {
+                processingEnv.getMessager().printMessage(Diagnostic.Kind.NOTE,
+                        "View handler is not accessible, no view routes are generated", type);
+                continue;
+            }
+
+            try {
+                generate(type);
+            } catch (IOException ex) {
+                processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                        "Could not generate view routes: " + ex.getMessage(), type);
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Checks if the view handler class can be accessed by a class in the same package.
+     */
+    private boolean isAccessible(TypeElement type) {
+        Element current = type;
+        while (current instanceof TypeElement) {
+            TypeElement te = (TypeElement) current;
+            if (te.getModifiers().contains(Modifier.PRIVATE)
+                    || te.getNestingKind() == NestingKind.LOCAL
+                    || te.getNestingKind() == NestingKind.ANONYMOUS
+                    || (te.getNestingKind() == NestingKind.MEMBER && !te.getModifiers().contains(Modifier.STATIC))) {
+                return false;
+            }
+            current = te.getEnclosingElement();
+        }
+        return true;
+    }
+
+    /**
+     * Generates the {@link ViewRoutes} class of a view handler.
+     *
+     * @param type
+     *            View handler class
+     */
+    private void generate(TypeElement type) throws IOException {
+        PackageElement pkg = processingEnv.getElementUtils().getPackageOf(type);
+        String packageName = pkg.isUnnamed() ? "" : pkg.getQualifiedName().toString();
+        String binaryName = processingEnv.getElementUtils().getBinaryName(type).toString();
+        String simpleName = (packageName.isEmpty() ? binaryName : binaryName.substring(packageName.length() + 1))
+                + ViewRoutes.SUFFIX;
+
+        List<String> routes = new ArrayList<>();
+        for (ExecutableElement method : ElementFilter.methodsIn(processingEnv.getElementUtils().getAllMembers(type))) {
+            if (!method.getModifiers().contains(Modifier.PUBLIC)
+                    || isObjectMethod(method)) {
+                continue;
+            }
+
+            ViewGroup groupAnno = findAnnotation(type, method, ViewGroup.class);
+            if (groupAnno != null) {
+                for (View viewAnno : groupAnno.value()) {
+                    routes.add(generateRoute(type, method, viewAnno));
+                }
+            }
+
+            View viewAnno = findAnnotation(type, method, View.class);
+            if (viewAnno != null) {
+                routes.add(generateRoute(type, method, viewAnno));
+            }
+        }
+
+        Writer w = processingEnv.getFiler()
+                .createSourceFile(packageName.isEmpty() ? simpleName : packageName + '.' + simpleName, type)
+                .openWriter();
+        try (PrintWriter out = new PrintWriter(w)) {
+            if (!packageName.isEmpty()) {
+                out.println("package " + packageName + ";");
+                out.println();
+            }
+            out.println("/**");
+            out.println(" * View routes of {@link " + type.getQualifiedName() + "}.");
+            out.println(" * <p>");
+            out.println(" * Generated by " + getClass().getName() + ", do not edit.");
+            out.println(" */");
+            out.println("public final class " + simpleName + " implements " + ViewRoutes.class.getName() + " {");
+            out.println();
+            out.println("    private static final java.util.List<org.shredzone.commons.view.manager.ViewRoute> ROUTES =");
+            out.println("            java.util.Collections.unmodifiableList(java.util.Arrays.asList(");
+            out.println(routes.stream().collect(Collectors.joining(",\n")));
+            out.println("            ));");
+            out.println();
+            out.println("    @Override");
+            out.println("    public java.util.List<org.shredzone.commons.view.manager.ViewRoute> getRoutes() {");
+            out.println("        return ROUTES;");
+            out.println("    }");
+            out.println();
+            out.println("}");
+        }
+    }
+
+    /**
+     * Generates the source of a single view route.
+     *
+     * @param type
+     *            View handler class
+     * @param method
+     *            View handler method
+     * @param anno
+     *            {@link View} annotation
+     * @return source code creating the view route
+     */
+    private String generateRoute(TypeElement type, ExecutableElement method, View anno) {
+        String methodName = method.getSimpleName().toString();
+        List<String> paramTypes = new ArrayList<>();
+        List<String> args = new ArrayList<>();
+        int ix = 0;
+        for (VariableElement param : method.getParameters()) {
+            String paramType = erasure(param.asType());
+            paramTypes.add(paramType + ".class");
+            args.add("(" + paramType + ") args[" + ix++ + "]");
+        }
+
+        String target = method.getModifiers().contains(Modifier.STATIC)
+                        ? type.getQualifiedName().toString()
+                        : "((" + erasure(type.asType()) + ") bean)";
+        String call = target + "." + methodName + "(" + String.join(", ", args) + ")";
+        String body = method.getReturnType().getKind() == TypeKind.VOID
+                        ? "{ " + call + "; return null; }"
+                        : call;
+
+        StringBuilder sb = new StringBuilder();
+        sb.append("                new org.shredzone.commons.view.manager.ViewRoute(\n");
+        sb.append("                        ").append(literal(ViewRouteUtils.computeViewName(methodName, anno))).append(",\n");
+        sb.append("                        ").append(literal(anno.pattern())).append(",\n");
+        sb.append("                        new String[] {")
+                .append(Arrays.stream(anno.signature())
+                        .map(this::literal)
+                        .collect(Collectors.joining(", ")))
+                .append("},\n");
+        sb.append("                        ").append(anno.qualifier().isEmpty() ? "null" : literal(anno.qualifier())).append(",\n");
+        sb.append("                        ").append(ViewRouteUtils.computeWeight(anno.pattern())).append(",\n");
+        sb.append("                        ").append(literal(methodName)).append(",\n");
+        sb.append("                        new Class<?>[] {").append(String.join(", ", paramTypes)).append("},\n");
+        sb.append("                        (bean, args) -> ").append(body).append(")");
+        return sb.toString();
+    }
+
+    /**
+     * Finds an annotation of a method, or of a method that it overrides. This mimics
+     * Spring's {@code AnnotationUtils.findAnnotation()}.
+     */
+    private <A extends Annotation> A findAnnotation(TypeElement type,
+            ExecutableElement method, Class<A> annotationType) {
+        A result = method.getAnnotation(annotationType);
+        if (result != null) {
+            return result;
+        }
+
+        for (TypeElement superType : superTypes(type)) {
+            for (ExecutableElement candidate : ElementFilter.methodsIn(superType.getEnclosedElements())) {
+                if (candidate.getAnnotation(annotationType) != null
+                        && processingEnv.getElementUtils().overrides(method, candidate, type)) {
+                    return candidate.getAnnotation(annotationType);
+                }
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Returns all superclasses and interfaces of a type.
+     */
+    private List<TypeElement> superTypes(TypeElement type) {
+        List<TypeElement> result = new ArrayList<>();
+        collectSuperTypes(type, result);
+        return result;
+    }
+
+    private void collectSuperTypes(TypeElement type, List<TypeElement> result) {
+        List<TypeMirror> supers = new ArrayList<>(type.getInterfaces());
+        supers.add(type.getSuperclass());
+        for (TypeMirror mirror : supers) {
+            if (mirror.getKind() == TypeKind.DECLARED) {
+                TypeElement te = (TypeElement) ((DeclaredType) mirror).asElement();
+                if (!result.contains(te)) {
+                    result.add(te);
+                    collectSuperTypes(te, result);
+                }
+            }
+        }
+    }
+
+    /**
+     * Checks if the method is declared by {@link Object}.
+     */
+    private boolean isObjectMethod(ExecutableElement method) {
+        return ((TypeElement) method.getEnclosingElement()).getQualifiedName().contentEquals("java.lang.Object");
+    }
+
+    /**
+     * Returns the erasure of a type, as source code.
+     */
+    private String erasure(TypeMirror type) {
+        return processingEnv.getTypeUtils().erasure(type).toString();
+    }
+
+    /**
+     * Returns a string as Java literal.
+     */
+    private String literal(String str) {
+        return processingEnv.getElementUtils().getConstantExpression(str);
+    }
+
+}
@@ -0,0 +1,142 @@
+/*
+ * Shredzone Commons
+ *
+ * Copyright (C) 2012 Richard "Shred" Körber
+ *   http://commons.shredzone.org
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Library General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.shredzone.commons.view.util;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+
+import org.shredzone.commons.view.PathContext;
+import org.springframework.expression.BeanResolver;
+import org.springframework.expression.ConstructorResolver;
+import org.springframework.expression.EvaluationContext;
+import org.springframework.expression.MethodResolver;
+import org.springframework.expression.OperatorOverloader;
+import org.springframework.expression.PropertyAccessor;
+import org.springframework.expression.TypeComparator;
+import org.springframework.expression.TypeConverter;
+import org.springframework.expression.TypeLocator;
+import org.springframework.expression.TypedValue;
+
+/**
+ * A lightweight {@link EvaluationContext} that binds a {@link PathContext} to a shared
+ * template context. The {@link PathContext} is used as root object, and its variables
+ * are available as SpEL variables. Everything else, like functions, type converter and
+ * property accessors, is taken from the template context.
+ * <p>
+ * This way, the costly setup of an evaluation context is only done once, and each
+ * evaluation only needs a small binding object. The template context is never changed
+ * by this class. Variables that are set while evaluating are kept in this binding.
+ * <p>
+ * {@link BoundEvaluationContext} is not thread safe. The template context must be safe
+ * for concurrent reads.
+ *
+ * @author Richard "Shred" Körber
+ */
+@ParametersAreNonnullByDefault
+public class BoundEvaluationContext implements EvaluationContext {
+
+    private final EvaluationContext template;
+    private final TypedValue root;
+    private final Map<String, Object> variables;
+    private Map<String, Object> localVariables;
+
+    /**
+     * Creates a new {@link BoundEvaluationContext}.
+     *
+     * @param template
+     *            Shared template {@link EvaluationContext}
+     * @param context
+     *            {@link PathContext} to be bound
+     */
+    public BoundEvaluationContext(EvaluationContext template, PathContext context) {
+        this.template = template;
+        this.root = new TypedValue(context);
+        this.variables = context.getVariables();
+    }
+
+    @Override
+    public TypedValue getRootObject() {
+        return root;
+    }
+
+    @Override
+    public List<PropertyAccessor> getPropertyAccessors() {
+        return template.getPropertyAccessors();
+    }
+
+    @Override
+    public List<ConstructorResolver> getConstructorResolvers() {
+        return template.getConstructorResolvers();
+    }
+
+    @Override
+    public List<MethodResolver> getMethodResolvers() {
+        return template.getMethodResolvers();
+    }
+
+    @Override
+    public BeanResolver getBeanResolver() {
+        return template.getBeanResolver();
+    }
+
+    @Override
+    public TypeLocator getTypeLocator() {
+        return template.getTypeLocator();
+    }
+
+    @Override
+    public TypeConverter getTypeConverter() {
+        return template.getTypeConverter();
+    }
+
+    @Override
+    public TypeComparator getTypeComparator() {
+        return template.getTypeComparator();
+    }
+
+    @Override
+    public OperatorOverloader getOperatorOverloader() {
+        return template.getOperatorOverloader();
+    }
+
+    @Override
+    public void setVariable(String name, Object value) {
+        if (localVariables == null) {
+            localVariables = new HashMap<>();
+        }
+        localVariables.put(name, value);
+    }
+
+    @Override
+    public Object lookupVariable(String name) {
+        if (localVariables != null && localVariables.containsKey(name)) {
+            return localVariables.get(name);
+        }
+        if (variables.containsKey(name)) {
+            return variables.get(name);
+        }
+        return template.lookupVariable(name);
+    }
+
+}
@@ -0,0 +1,234 @@
+/*
+ * Shredzone Commons
+ *
+ * Copyright (C) 2012 Richard "Shred" Körber
+ *   http://commons.shredzone.org
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Library General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.shredzone.commons.view.util;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiPredicate;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * A size bounded cache that evicts the least recently used entries.
+ * <p>
+ * The cache is split into segments by the hash code of the key, so concurrent threads
+ * rarely block each other. Each segment evicts its own least recently used entry when
+ * it is full.
+ * <p>
+ * {@link LruCache LruCaches} are thread safe.
+ *
+ * @author Richard "Shred" Körber
+ */
+@ParametersAreNonnullByDefault
+@ThreadSafe
+public class LruCache<K, V> {
+    private static final int MAX_SEGMENTS = 16;
+    private static final int MIN_SEGMENT_SIZE = 32;
+
+    private final Segment<K, V>[] segments;
+    private final int capacity;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * Creates a new {@link LruCache}.
+     *
+     * @param capacity
+     *            Maximum number of entries in this cache
+     */
+    public LruCache(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive: " + capacity);
+        }
+
+        int count = 1;
+        while (count < MAX_SEGMENTS && capacity / (count * 2) >= MIN_SEGMENT_SIZE) {
+            count <<= 1;
+        }
+
+        this.capacity = capacity;
+        @SuppressWarnings("unchecked")
+        Segment<K, V>[] segs = (Segment<K, V>[]) new Segment<?, ?>[count];
+        for (int ix = 0; ix < count; ix++) {
+            // Distribute the capacity, so the sum of all segment sizes is the capacity
+            segs[ix] = new Segment<>((capacity + count - 1 - ix) / count);
+        }
+        this.segments = segs;
+    }
+
+    /**
+     * Gets a value from the cache.
+     *
+     * @param key
+     *            Key of the value
+     * @return Cached value, or {@code null} if the key was not found in the cache
+     */
+    public V get(K key) {
+        Segment<K, V> segment = segmentFor(key);
+        V result;
+        synchronized (segment) {
+            result = segment.get(key);
+        }
+
+        if (result != null) {
+            hits.increment();
+        } else {
+            misses.increment();
+        }
+        return result;
+    }
+
+    /**
+     * Puts a value into the cache. If the cache is full, the least recently used entry
+     * is evicted.
+     *
+     * @param key
+     *            Key of the value
+     * @param value
+     *            Value to be cached
+     */
+    public void put(K key, V value) {
+        Segment<K, V> segment = segmentFor(key);
+        synchronized (segment) {
+            segment.put(key, value);
+        }
+    }
+
+    /**
+     * Removes a value from the cache.
+     *
+     * @param key
+     *            Key of the value to be removed
+     */
+    public void remove(K key) {
+        Segment<K, V> segment = segmentFor(key);
+        synchronized (segment) {
+            segment.remove(key);
+        }
+    }
+
+    /**
+     * Removes all entries that match the given predicate.
+     *
+     * @param filter
+     *            Predicate that returns {@code true} for entries to be removed
+     * @return Number of removed entries
+     */
+    public int removeIf(BiPredicate<? super K, ? super V> filter) {
+        int result = 0;
+        for (Segment<K, V> segment : segments) {
+            synchronized (segment) {
+                int before = segment.size();
+                segment.entrySet().removeIf(entry -> filter.test(entry.getKey(), entry.getValue()));
+                result += before - segment.size();
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Removes all entries from the cache. The hit and miss counters are not reset.
+     */
+    public void clear() {
+        for (Segment<K, V> segment : segments) {
+            synchronized (segment) {
+                segment.clear();
+            }
+        }
+    }
+
+    /**
+     * Returns the current number of entries in the cache.
+     */
+    public int size() {
+        int result = 0;
+        for (Segment<K, V> segment : segments) {
+            synchronized (segment) {
+                result += segment.size();
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the maximum number of entries in the cache.
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Returns the number of lookups that found a value in the cache.
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * Returns the number of lookups that did not find a value in the cache.
+     */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * Returns the ratio of lookups that found a value in the cache.
+     *
+     * @return Hit rate between 0.0 and 1.0, or 0.0 if there were no lookups yet
+     */
+    public double getHitRate() {
+        long h = hits.sum();
+        long total = h + misses.sum();
+        return total > 0 ? (double) h / total : 0.0;
+    }
+
+    /**
+     * Finds the segment that is responsible for the given key.
+     */
+    private Segment<K, V> segmentFor(Object key) {
+        int h = key.hashCode();
+        h ^= (h >>> 16);
+        return segments[h & (segments.length - 1)];
+    }
+
+    /**
+     * A single segment of the cache. It is a {@link LinkedHashMap} in access order that
+     * removes its eldest entry when it is full.
+     */
+    private static class Segment<K, V> extends LinkedHashMap<K, V> {
+        private static final long serialVersionUID = -3215435868412049327L;
+
+        private final int maxSize;
+
+        private Segment(int maxSize) {
+            super(16, 0.75f, true);
+            this.maxSize = maxSize;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+            return size() > maxSize;
+        }
+    }
+
+}
@@ -172,13 +172,17 @@ public final class PathUtils {
      * URL decodes a string. utf-8 charset is used for decoding.
      * <p>
      * This is a convenience call of {@link URLDecoder#decode(String, String)} with
-     * exception handling.
+     * exception handling. If the string does not contain any encoded characters, it is
+     * returned unchanged.
      *
      * @param string
      *            the string to be URL decoded
      * @return decoded string
      */
     public static @Nonnull String decode(String string) {
+        if (string.indexOf('%') < 0 && string.indexOf('+') < 0) {
+            return string;
+        }
         return URLDecoder.decode(string, StandardCharsets.UTF_8);
     }
 
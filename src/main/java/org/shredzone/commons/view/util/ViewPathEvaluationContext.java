@@ -20,6 +20,8 @@
 
 package org.shredzone.commons.view.util;
 
+import java.lang.reflect.Method;
+
 import javax.annotation.ParametersAreNonnullByDefault;
 
 import org.shredzone.commons.view.PathContext;
@@ -44,6 +46,21 @@ import org.springframework.expression.spel.support.StandardEvaluationContext;
  */
 @ParametersAreNonnullByDefault
 public class ViewPathEvaluationContext extends StandardEvaluationContext {
+    private static final Method SIMPLIFY = findMethod("simplify");
+    private static final Method SUFFIX = findMethod("suffix");
+    private static final Method ENCODE = findMethod("encode");
+
+    /**
+     * Instantiates a new view path evaluation context without root object. It can be
+     * used as a shared template for a {@link BoundEvaluationContext}.
+     */
+    public ViewPathEvaluationContext() {
+        try {
+            init();
+        } catch (NoSuchMethodException ex) {
+            throw new IllegalStateException("Exception while creating context", ex);
+        }
+    }
 
     /**
      * Instantiates a new view path evaluation context.
@@ -66,18 +83,20 @@ public class ViewPathEvaluationContext extends StandardEvaluationContext {
      * more functions.
      */
     protected void init() throws NoSuchMethodException {
-        registerFunction(
-                "simplify",
-                PathUtils.class.getDeclaredMethod("simplify", new Class[] { String.class })
-        );
-        registerFunction(
-                "suffix",
-                PathUtils.class.getDeclaredMethod("suffix", new Class[] { String.class })
-        );
-        registerFunction(
-                "encode",
-                PathUtils.class.getDeclaredMethod("encode", new Class[] { String.class })
-        );
+        registerFunction("simplify", SIMPLIFY);
+        registerFunction("suffix", SUFFIX);
+        registerFunction("encode", ENCODE);
+    }
+
+    /**
+     * Finds a {@link PathUtils} function. The lookup is only done once per class.
+     */
+    private static Method findMethod(String name) {
+        try {
+            return PathUtils.class.getDeclaredMethod(name, String.class);
+        } catch (NoSuchMethodException ex) {
+            throw new ExceptionInInitializerError(ex);
+        }
     }
 
 }
@@ -0,0 +1,112 @@
+/*
+ * Shredzone Commons
+ *
+ * Copyright (C) 2012 Richard "Shred" Körber
+ *   http://commons.shredzone.org
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Library General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.shredzone.commons.view.util;
+
+import javax.annotation.Nonnull;
+import javax.annotation.ParametersAreNonnullByDefault;
+
+import org.shredzone.commons.view.annotation.View;
+
+/**
+ * Utility methods for computing the view routes of view handlers.
+ * <p>
+ * They are used both at runtime and by the annotation processor, so this class must
+ * not depend on any other library.
+ *
+ * @author Richard "Shred" Körber
+ */
+@ParametersAreNonnullByDefault
+public final class ViewRouteUtils {
+
+    private ViewRouteUtils() {
+        // Utility class without constructor
+    }
+
+    /**
+     * Computes a view name. If the {@link View} annotation contains a name, it is used.
+     * If no name is given, it is guessed by the method name. If the method name ends with
+     * "View", it is removed.
+     *
+     * @param methodName
+     *            Name of the view handler method
+     * @param anno
+     *            {@link View} annotation
+     * @return view name to be used for this view
+     */
+    public static @Nonnull String computeViewName(String methodName, View anno) {
+        if (hasText(anno.name())) {
+            return anno.name();
+        }
+
+        String name = methodName;
+        if (name.length() > 4 && name.endsWith("View")) {
+            name = name.substring(0, name.length() - "View".length());
+        }
+
+        return name;
+    }
+
+    /**
+     * Computes the weight of the pattern. The weight is computed by a score where every
+     * path delimiter '/' counts 10, constant character counts 5 and every path parameter
+     * counts 1.
+     *
+     * @param pstr
+     *            view pattern to weight
+     * @return weight of this pattern
+     */
+    public static int computeWeight(String pstr) {
+        int count = 0;
+        int pos = 0;
+        while (pos < pstr.length()) {
+            char ch = pstr.charAt(pos);
+            if (ch == '/') {
+                count += 10;
+
+            } else if (ch == '$' && pos + 1 < pstr.length() && pstr.charAt(pos + 1) == '{') {
+                int end = pstr.indexOf('}', pos);
+                if (end >= 0) {
+                    pos = end;
+                    count += 1;
+                }
+
+            } else {
+                count += 5;
+            }
+
+            pos++;
+        }
+        return count;
+    }
+
+    /**
+     * Checks if the string contains at least one non-whitespace character.
+     */
+    private static boolean hasText(String str) {
+        for (int ix = 0; ix < str.length(); ix++) {
+            if (!Character.isWhitespace(str.charAt(ix))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+}
@@ -0,0 +1,141 @@
+/*
+ * Shredzone Commons
+ *
+ * Copyright (C) 2012 Richard "Shred" Körber
+ *   http://commons.shredzone.org
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Library General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.shredzone.commons.view;
+
+import java.util.Arrays;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link Signature}.
+ *
+ * @author Richard "Shred" Körber
+ */
+public class SignatureTest {
+
+    @Test
+    public void equalityTest() {
+        Signature s1 = new Signature(new String[] {"tag", "page", "#lang"});
+        Signature s2 = new Signature(Arrays.asList("#lang", "", "tag", null, "page"));
+        Signature s3 = new Signature(new String[] {"tag", "page"});
+
+        Assert.assertEquals(s1, s2);
+        Assert.assertEquals(s1.hashCode(), s2.hashCode());
+        Assert.assertEquals(s1.intern().getId(), s2.getId());
+        Assert.assertEquals(s1.intern(), s2);
+        Assert.assertSame(s1.intern(), s2.intern());
+        Assert.assertEquals("#lang|page|tag", s1.toString());
+
+        Assert.assertNotEquals(s1, s3);
+        Assert.assertNotEquals(s1.getId(), s3.intern().getId());
+        Assert.assertEquals("page|tag", s3.toString());
+
+        Assert.assertEquals("", new Signature(new String[0]).toString());
+
+        Assert.assertFalse(s1.isVariablesOnly());
+        Assert.assertTrue(new Signature(new String[] {"#lang", "#page"}).isVariablesOnly());
+        Assert.assertTrue(new Signature(new String[0]).isVariablesOnly());
+    }
+
+    @Test
+    public void pathContextTest() {
+        AbstractPathContext context = new AbstractPathContext() {
+            @Override
+            public String getQualifier() {
+                return null;
+            }
+        };
+
+        Signature empty = context.getSignature();
+        Assert.assertEquals(new Signature(new String[0]), empty);
+
+        context.addProperty("page");
+        context.setVariable("lang", "de");
+        context.addProperty("tag");
+        context.addProperty("page");
+
+        Signature sig = context.getSignature();
+        Assert.assertEquals(new Signature(new String[] {"tag", "page", "#lang"}), sig);
+        Assert.assertSame(sig, context.getSignature());
+        Assert.assertEquals("#lang|page|tag", sig.toString());
+    }
+
+    @Test
+    public void containsAllTest() {
+        Signature s1 = new Signature(new String[] {"tag", "page", "#lang"});
+        Signature s2 = new Signature(new String[] {"page", "#lang"});
+        Signature empty = new Signature(new String[0]);
+
+        Assert.assertTrue(s1.containsAll(s1));
+        Assert.assertTrue(s1.containsAll(s2));
+        Assert.assertFalse(s2.containsAll(s1));
+        Assert.assertTrue(s1.containsAll(empty));
+        Assert.assertTrue(empty.containsAll(empty));
+        Assert.assertFalse(empty.containsAll(s2));
+
+        Signature unknown = new Signature(new String[] {"containsAllUnknown", "#lang"});
+        Signature withUnknown = new Signature(new String[] {"containsAllUnknown", "page", "#lang"});
+        Assert.assertTrue(withUnknown.containsAll(unknown));
+        Assert.assertFalse(unknown.containsAll(withUnknown));
+        Assert.assertFalse(s1.containsAll(unknown));
+
+        // The element is known now, but the signatures above were created before
+        Signature interned = unknown.intern();
+        Assert.assertTrue(withUnknown.containsAll(interned));
+        Assert.assertTrue(interned.containsAll(unknown));
+        Assert.assertFalse(interned.containsAll(withUnknown));
+        Assert.assertFalse(s1.containsAll(interned));
+    }
+
+    @Test
+    public void adHocTest() {
+        int firstId = new Signature(new String[] {"adHocFirst"}).intern().getId();
+
+        for (int ix = 0; ix < 10000; ix++) {
+            AbstractPathContext context = new AbstractPathContext() {
+                @Override
+                public String getQualifier() {
+                    return null;
+                }
+            };
+            context.addProperty("adHoc" + ix);
+            context.setVariable("adHocVar" + ix, ix);
+            Signature sig = context.getSignature();
+            Assert.assertEquals(-1, sig.getId());
+            Assert.assertEquals("#adHocVar" + ix + "|adHoc" + ix, sig.toString());
+
+            Assert.assertEquals(-1, new Signature(new String[] {"adHocSig" + ix}).getId());
+        }
+
+        // Ad-hoc signatures did not consume any ids
+        Signature second = new Signature(new String[] {"adHocSecond"}).intern();
+        Assert.assertEquals(firstId + 1, second.getId());
+
+        // A signature that was created before gets the id of the interned one
+        Signature later = new Signature(new String[] {"adHocLater"});
+        Assert.assertEquals(-1, later.getId());
+        Signature laterInterned = new Signature(new String[] {"adHocLater"}).intern();
+        Assert.assertEquals(laterInterned.getId(), later.getId());
+        Assert.assertEquals(laterInterned, later);
+    }
+
+}
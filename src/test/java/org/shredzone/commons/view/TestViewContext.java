@@ -0,0 +1,105 @@
+/*
+ * Shredzone Commons
+ *
+ * Copyright (C) 2012 Richard "Shred" Körber
+ *   http://commons.shredzone.org
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Library General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.shredzone.commons.view;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.shredzone.commons.view.exception.ViewContextException;
+
+/**
+ * A simple {@link ViewContext} for unit tests. It is not bound to a servlet request.
+ *
+ * @author Richard "Shred" Körber
+ */
+public class TestViewContext implements ViewContext {
+    private final Map<String, String> pathParts = new HashMap<>();
+    private final Map<Class<?>, Object> typedValues = new HashMap<>();
+    private String qualifier;
+
+    /**
+     * Creates a new {@link TestViewContext} without path parts.
+     */
+    public TestViewContext() {
+        // default constructor
+    }
+
+    /**
+     * Creates a new {@link TestViewContext}.
+     *
+     * @param pathParts
+     *            Path parts to be used, they are copied into a mutable map
+     */
+    public TestViewContext(Map<String, String> pathParts) {
+        this.pathParts.putAll(pathParts);
+    }
+
+    @Override
+    public String getRequestServerUrl() {
+        return "http://localhost";
+    }
+
+    @Override
+    public String getRequestServletName() {
+        return "/app";
+    }
+
+    @Override
+    public <T> void putTypedArgument(Class<T> type, T value) {
+        typedValues.put(type, value);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T getValueOfType(Class<T> type) throws ViewContextException {
+        if (!typedValues.containsKey(type)) {
+            throw new ViewContextException("No value of type " + type);
+        }
+        return (T) typedValues.get(type);
+    }
+
+    @Override
+    public void setPathParts(Map<String, String> pathParts) {
+        this.pathParts.clear();
+        this.pathParts.putAll(pathParts);
+    }
+
+    @Override
+    public Map<String, String> getPathParts() {
+        return pathParts;
+    }
+
+    @Override
+    public String getParameter(String name) {
+        return null;
+    }
+
+    @Override
+    public void setQualifier(String qualifier) {
+        this.qualifier = qualifier;
+    }
+
+    @Override
+    public String getQualifier() {
+        return qualifier;
+    }
+
+}
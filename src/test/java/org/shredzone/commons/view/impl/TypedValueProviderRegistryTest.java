@@ -0,0 +1,80 @@
+/*
+ * Shredzone Commons
+ *
+ * Copyright (C) 2012 Richard "Shred" Körber
+ *   http://commons.shredzone.org
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Library General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.shredzone.commons.view.impl;
+
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.util.Locale;
+
+import javax.servlet.ServletRequest;
+import javax.servlet.http.HttpServletRequest;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.shredzone.commons.view.TypedValueProvider;
+import org.shredzone.commons.view.ViewContext;
+
+/**
+ * Unit tests for {@link TypedValueProviderRegistry}.
+ *
+ * @author Richard "Shred" Körber
+ */
+public class TypedValueProviderRegistryTest {
+
+    /**
+     * Test if the providers are found by the requested type.
+     */
+    @Test
+    public void findProviderTest() {
+        TypedValueProviderRegistry registry = new TypedValueProviderRegistry();
+
+        Assert.assertEquals(HttpServletRequest.class, registry.findProvider(HttpServletRequest.class).getType());
+        Assert.assertEquals(HttpServletRequest.class, registry.findProvider(ServletRequest.class).getType());
+        Assert.assertEquals(HttpServletRequest.class, registry.findProvider(Object.class).getType());
+        Assert.assertEquals(Locale.class, registry.findProvider(Locale.class).getType());
+        Assert.assertEquals(OutputStream.class, registry.findProvider(OutputStream.class).getType());
+        Assert.assertNull(registry.findProvider(User.class));
+
+        TypedValueProvider<User> userProvider = new TypedValueProvider<User>() {
+            @Override
+            public Class<User> getType() {
+                return User.class;
+            }
+
+            @Override
+            public User getValue(ViewContext context, HttpServletRequest req) {
+                return new User();
+            }
+        };
+
+        // Previous lookups must not be cached after registration
+        registry.register(userProvider);
+        Assert.assertSame(userProvider, registry.findProvider(User.class));
+
+        // Built-in providers take precedence
+        Assert.assertEquals(Locale.class, registry.findProvider(Serializable.class).getType());
+    }
+
+    public static class User implements Serializable {
+        private static final long serialVersionUID = 1L;
+    }
+
+}
@@ -0,0 +1,504 @@
+/*
+ * Shredzone Commons
+ *
+ * Copyright (C) 2012 Richard "Shred" Körber
+ *   http://commons.shredzone.org
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Library General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.shredzone.commons.view.impl;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.shredzone.commons.view.AbstractPathContext;
+import org.shredzone.commons.view.PathContext;
+import org.shredzone.commons.view.PathType;
+import org.shredzone.commons.view.TestViewContext;
+import org.shredzone.commons.view.annotation.PathPart;
+import org.shredzone.commons.view.annotation.View;
+import org.shredzone.commons.view.annotation.ViewHandler;
+import org.shredzone.commons.view.exception.PageNotFoundException;
+import org.shredzone.commons.view.exception.ViewException;
+import org.shredzone.commons.view.manager.ViewManager;
+import org.shredzone.commons.view.util.LruCache;
+import org.springframework.context.support.StaticApplicationContext;
+import org.springframework.core.convert.support.DefaultConversionService;
+import org.springframework.expression.EvaluationContext;
+import org.springframework.expression.spel.support.StandardEvaluationContext;
+import org.springframework.util.ReflectionUtils;
+
+/**
+ * Unit tests for {@link ViewServiceImpl}.
+ *
+ * @author Richard "Shred" Körber
+ */
+public class ViewServiceImplTest {
+
+    private static final List<String> PATHS = Arrays.asList(
+            "/blog/index.html", "/blog/12.html", "/blog/13.html", "/blog/12.html",
+            "/gallery/7.html", "/blog/index.html", "/gallery/7.html", "/unknown.html");
+
+    /**
+     * Test that the path cache resolves exactly like an uncached service, also after
+     * the routes have changed.
+     */
+    @Test
+    public void pathCacheTest() {
+        ViewManager manager = createManager();
+        manager.registerHandler(new BlogHandler());
+
+        ViewServiceImpl uncached = createService(manager);
+        ViewServiceImpl cached = createService(manager);
+        cached.setPathCacheSize(100);
+
+        List<String> expected = invokeAll(uncached);
+        Assert.assertEquals(Arrays.asList("blog-index", "blog-12", "blog-13", "blog-12",
+                "404", "blog-index", "404", "404"), expected);
+        Assert.assertEquals(expected, invokeAll(cached));
+        Assert.assertEquals(expected, invokeAll(cached));
+        Assert.assertTrue(cached.getPathCache().getHitRate() > 0.0);
+
+        manager.registerHandler(new GalleryHandler());
+
+        expected = invokeAll(uncached);
+        Assert.assertEquals(Arrays.asList("blog-index", "blog-12", "blog-13", "blog-12",
+                "gallery-7", "blog-index", "gallery-7", "404"), expected);
+        Assert.assertEquals(expected, invokeAll(cached));
+    }
+
+    /**
+     * Test that a path that was cached as a miss is resolved once a handler for it
+     * was registered.
+     */
+    @Test
+    public void missCacheTest() {
+        ViewManager manager = createManager();
+        manager.registerHandler(new BlogHandler());
+
+        ViewServiceImpl service = createService(manager);
+        Assert.assertNotNull(service.getMissCache());
+
+        Assert.assertEquals("404", invoke(service, "/gallery/7.html"));
+        Assert.assertEquals("404", invoke(service, "/gallery/7.html"));
+        Assert.assertEquals(1, service.getMissCache().size());
+        Assert.assertTrue(service.getMissCache().getHitRate() > 0.0);
+
+        manager.registerHandler(new GalleryHandler());
+        Assert.assertEquals("gallery-7", invoke(service, "/gallery/7.html"));
+        Assert.assertEquals(0, service.getMissCache().size());
+
+        manager.unregisterHandler(manager.getRouteTable().resolve("/gallery/7.html")
+                .getPattern().getInvoker().getBean());
+        Assert.assertEquals("404", invoke(service, "/gallery/7.html"));
+    }
+
+    /**
+     * Test that buildPaths() gives the same result as repeated buildPath() invocations,
+     * with mixed qualifiers and signatures.
+     */
+    @Test
+    public void buildPathsTest() {
+        ViewManager manager = createManager();
+        manager.registerHandler(new LinkHandler());
+
+        List<LinkContext> contexts = Arrays.asList(
+                LinkContext.tag("foo", null, null),
+                LinkContext.tag("foo", 2, null),
+                LinkContext.tag("bar", 3, null),
+                LinkContext.tag("bar", null, "mobile"),
+                LinkContext.tag("baz", null, "mobile"),
+                LinkContext.item(12L),
+                LinkContext.tag("baz", null, null),
+                LinkContext.tag("baz", 4, null));
+
+        ViewServiceImpl uncached = createService(manager);
+        ViewServiceImpl cached = createService(manager);
+        cached.setLinkCacheSize(100);
+
+        for (ViewServiceImpl service : Arrays.asList(uncached, cached)) {
+            List<String> byName = contexts.stream()
+                    .map(data -> service.buildPath(data, "tag", PathType.VIEW))
+                    .collect(Collectors.toList());
+            Assert.assertEquals(Arrays.asList("/tag/foo.html", "/tag/foo/2.html", "/tag/bar/3.html",
+                    "/m/tag/bar.html", "/m/tag/baz.html", null, "/tag/baz.html", "/tag/baz/4.html"), byName);
+            Assert.assertEquals(byName, service.buildPaths(contexts, "tag", PathType.VIEW));
+
+            List<String> bySignature = contexts.stream()
+                    .map(data -> service.buildPath(data, null, PathType.VIEW))
+                    .collect(Collectors.toList());
+            Assert.assertEquals(Arrays.asList("/tag/foo.html", "/tag/foo/2.html", "/tag/bar/3.html",
+                    "/m/tag/bar.html", "/m/tag/baz.html", "/item/12.html", "/tag/baz.html", "/tag/baz/4.html"),
+                    bySignature);
+            Assert.assertEquals(bySignature, service.buildPaths(contexts, null, PathType.VIEW));
+        }
+    }
+
+    /**
+     * Test that streaming a path into an {@link Appendable} writes the same as
+     * buildPath() returns, writes nothing if no view matches, and passes on
+     * {@link IOException} of the {@link Appendable}.
+     */
+    @Test
+    public void appendPathTest() throws IOException {
+        ViewManager manager = createManager();
+        manager.registerHandler(new LinkHandler());
+
+        List<LinkContext> contexts = Arrays.asList(
+                LinkContext.tag("foo", null, null),
+                LinkContext.tag("foo", 2, null),
+                LinkContext.tag("bar", null, "mobile"),
+                LinkContext.item(12L));
+
+        ViewServiceImpl uncached = createService(manager);
+        ViewServiceImpl cached = createService(manager);
+        cached.setLinkCacheSize(100);
+
+        for (ViewServiceImpl service : Arrays.asList(uncached, cached)) {
+            for (LinkContext data : contexts) {
+                for (String view : Arrays.asList("tag", null)) {
+                    String expected = service.buildPath(data, view, PathType.VIEW);
+                    StringBuilder sb = new StringBuilder("link:");
+                    boolean written = service.buildPath(data, view, PathType.VIEW, sb);
+                    Assert.assertEquals(expected != null, written);
+                    Assert.assertEquals("link:" + (expected != null ? expected : ""), sb.toString());
+                }
+            }
+
+            // Nothing is written if there is no matching view
+            StringBuilder sb = new StringBuilder();
+            Assert.assertFalse(service.buildPath(LinkContext.item(12L), "tag", PathType.VIEW, sb));
+            Assert.assertEquals(0, sb.length());
+
+            // Twice, so the cached link is also written
+            for (int ix = 0; ix < 2; ix++) {
+                try {
+                    service.buildPath(LinkContext.tag("foo", null, null), "tag", PathType.VIEW, new FailingAppendable());
+                    Assert.fail("IOException expected");
+                } catch (IOException ex) {
+                    Assert.assertEquals("failed", ex.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * Test that the link cache returns cached links, and that links are evaluated again
+     * if the variables or cache key change, if the links were invalidated, or if the
+     * routes were changed.
+     */
+    @Test
+    public void linkCacheTest() {
+        ViewManager manager = createManager();
+        LinkHandler handler = new LinkHandler();
+        manager.registerHandler(handler);
+
+        ViewServiceImpl service = createService(manager);
+        service.setLinkCacheSize(100);
+        LruCache<?, String> cache = service.getLinkCache();
+
+        // Variables only: the variables are the cache key
+        Assert.assertEquals("/tag/foo.html", service.buildPath(LinkContext.tag("foo", null, null), null, PathType.VIEW));
+        Assert.assertEquals("/tag/foo.html", service.buildPath(LinkContext.tag("foo", null, null), null, PathType.VIEW));
+        Assert.assertEquals(1, cache.getHits());
+        Assert.assertEquals(1, cache.size());
+
+        Assert.assertEquals("/tag/bar.html", service.buildPath(LinkContext.tag("bar", null, null), null, PathType.VIEW));
+        Assert.assertEquals(1, cache.getHits());
+        Assert.assertEquals(2, cache.size());
+
+        // A cache key replaces the variables as key
+        LinkContext keyed = LinkContext.tag("baz", null, null);
+        keyed.setCacheKey("tag-baz");
+        Assert.assertEquals("/tag/baz.html", service.buildPath(keyed, null, PathType.VIEW));
+        LinkContext sameKey = LinkContext.tag("foo", null, null);
+        sameKey.setCacheKey("tag-baz");
+        Assert.assertEquals("/tag/baz.html", service.buildPath(sameKey, null, PathType.VIEW));
+        Assert.assertEquals(2, cache.getHits());
+        Assert.assertEquals(3, cache.size());
+
+        // Properties without cache key are not cached
+        Assert.assertEquals("/item/12.html", service.buildPath(LinkContext.item(12L), null, PathType.VIEW));
+        Assert.assertEquals(3, cache.size());
+
+        LinkContext item = LinkContext.item(12L);
+        item.setCacheKey("item-12");
+        Assert.assertEquals("/item/12.html", service.buildPath(item, null, PathType.VIEW));
+        Assert.assertEquals(4, cache.size());
+
+        // Invalidate a single cache key
+        Assert.assertEquals(1, service.invalidateLinks("tag-baz"));
+        Assert.assertEquals(0, service.invalidateLinks("tag-baz"));
+        Assert.assertEquals("/tag/foo.html", service.buildPath(sameKey, null, PathType.VIEW));
+        Assert.assertEquals(4, cache.size());
+
+        // Invalidate all links
+        service.invalidateLinks();
+        Assert.assertEquals(0, cache.size());
+        long hits = cache.getHits();
+        Assert.assertEquals("/tag/foo.html", service.buildPath(LinkContext.tag("foo", null, null), null, PathType.VIEW));
+        Assert.assertEquals(hits, cache.getHits());
+        Assert.assertEquals(1, cache.size());
+
+        // Links of previous routes are not used any more
+        manager.unregisterHandler(handler);
+        manager.registerHandler(new ShortLinkHandler());
+        Assert.assertEquals("/t/foo.html", service.buildPath(LinkContext.tag("foo", null, null), null, PathType.VIEW));
+        Assert.assertEquals(hits, cache.getHits());
+        Assert.assertEquals("/t/foo.html", service.buildPath(LinkContext.tag("foo", null, null), null, PathType.VIEW));
+        Assert.assertEquals(hits + 1, cache.getHits());
+    }
+
+    /**
+     * Test that link candidates are not skipped if they use variables of the template
+     * context, or properties that are not part of the signature.
+     */
+    @Test
+    public void requirementsTest() {
+        ViewManager manager = createManager();
+        manager.registerHandler(new SiteHandler());
+
+        ViewServiceImpl service = createService(manager, new ViewServiceImpl() {
+            @Override
+            protected EvaluationContext createTemplateContext() {
+                EvaluationContext context = super.createTemplateContext();
+                context.setVariable("site", "example");
+                return context;
+            }
+        });
+
+        LinkContext context = LinkContext.tag("foo", null, null);
+        Assert.assertEquals("/site/example/foo.html", service.buildPath(context, "site", PathType.VIEW));
+        Assert.assertEquals("/slug/plain-foo.html", service.buildPath(context, "slug", PathType.VIEW));
+
+        // Variables that are not provided at all still skip the candidate
+        Assert.assertNull(service.buildPath(context, "missing", PathType.VIEW));
+    }
+
+    /**
+     * Test that an overridden createEvaluationContext() is still used, and that the
+     * default implementation still returns a {@link StandardEvaluationContext}.
+     */
+    @Test
+    public void evaluationContextTest() {
+        ViewManager manager = createManager();
+        manager.registerHandler(new SiteHandler());
+
+        ViewServiceImpl service = createService(manager, new ViewServiceImpl() {
+            @Override
+            protected EvaluationContext createEvaluationContext(PathContext context) {
+                StandardEvaluationContext evContext =
+                        (StandardEvaluationContext) super.createEvaluationContext(context);
+                evContext.setVariable("site", "custom");
+                return evContext;
+            }
+        });
+
+        LinkContext context = LinkContext.tag("foo", null, null);
+        Assert.assertEquals("/site/custom/foo.html", service.buildPath(context, "site", PathType.VIEW));
+        Assert.assertEquals("/slug/plain-foo.html", service.buildPath(context, "slug", PathType.VIEW));
+    }
+
+    /**
+     * Invokes all {@link #PATHS} at the given service.
+     *
+     * @return List of the invocation results, "404" if the page was not found
+     */
+    private static List<String> invokeAll(ViewServiceImpl service) {
+        return PATHS.stream().map(path -> invoke(service, path)).collect(Collectors.toList());
+    }
+
+    /**
+     * Invokes a path at the given service.
+     *
+     * @return Invocation result, "404" if the page was not found
+     */
+    private static String invoke(ViewServiceImpl service, String path) {
+        try {
+            return service.invokeView(path);
+        } catch (PageNotFoundException ex) {
+            return "404";
+        } catch (ViewException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    /**
+     * Creates a {@link ViewManager} without handlers.
+     */
+    private static ViewManager createManager() {
+        ViewManager manager = new ViewManager();
+        inject(manager, "conversionService", new DefaultConversionService());
+        return manager;
+    }
+
+    /**
+     * Creates a {@link ViewServiceImpl} for the given {@link ViewManager}. Caches are
+     * configured by their defaults.
+     */
+    private static ViewServiceImpl createService(ViewManager manager) {
+        return createService(manager, new ViewServiceImpl());
+    }
+
+    /**
+     * Sets up the given {@link ViewServiceImpl} for the given {@link ViewManager}.
+     */
+    private static ViewServiceImpl createService(ViewManager manager, ViewServiceImpl service) {
+        StaticApplicationContext appContext = new StaticApplicationContext();
+        appContext.refresh();
+        appContext.getBeanFactory().registerSingleton("viewContext", new TestViewContext());
+
+        inject(service, "viewManager", manager);
+        inject(service, "appContext", appContext);
+        inject(service, "conversionService", new DefaultConversionService());
+        service.setup();
+        return service;
+    }
+
+    /**
+     * Sets a field that is usually injected by Spring.
+     */
+    private static void inject(Object target, String fieldName, Object value) {
+        Field field = ReflectionUtils.findField(target.getClass(), fieldName);
+        ReflectionUtils.makeAccessible(field);
+        ReflectionUtils.setField(field, target, value);
+    }
+
+    private static class FailingAppendable implements Appendable {
+        @Override
+        public Appendable append(CharSequence csq) throws IOException {
+            throw new IOException("failed");
+        }
+
+        @Override
+        public Appendable append(CharSequence csq, int start, int end) throws IOException {
+            throw new IOException("failed");
+        }
+
+        @Override
+        public Appendable append(char c) throws IOException {
+            throw new IOException("failed");
+        }
+    }
+
+    @ViewHandler
+    public static class BlogHandler {
+        @View(pattern = "/blog/index.html")
+        public String indexView() {
+            return "blog-index";
+        }
+
+        @View(pattern = "/blog/${id}.html")
+        public String entryView(@PathPart("id") String id) {
+            return "blog-" + id;
+        }
+    }
+
+    @ViewHandler
+    public static class LinkHandler {
+        @View(pattern = "/tag/${#tag}.html", name = "tag", signature = {"#tag"})
+        @View(pattern = "/tag/${#tag}/${#page}.html", name = "tag", signature = {"#tag", "#page"})
+        @View(pattern = "/m/tag/${#tag}.html", name = "tag", signature = {"#tag"}, qualifier = "mobile")
+        public String tagView() {
+            return null;
+        }
+
+        @View(pattern = "/item/${id}.html", name = "item", signature = {"id"})
+        public String itemView() {
+            return null;
+        }
+    }
+
+    @ViewHandler
+    public static class ShortLinkHandler {
+        @View(pattern = "/t/${#tag}.html", name = "tag", signature = {"#tag"})
+        public String tagView() {
+            return null;
+        }
+    }
+
+    @ViewHandler
+    public static class SiteHandler {
+        @View(pattern = "/site/${#site}/${#tag}.html", name = "site", signature = {"#tag"})
+        @View(pattern = "/slug/${slug}.html", name = "slug")
+        @View(pattern = "/missing/${#missing}.html", name = "missing")
+        public String siteView() {
+            return null;
+        }
+    }
+
+    public static class LinkContext extends AbstractPathContext {
+        private String qualifier;
+        private Object cacheKey;
+        private Long id;
+
+        public static LinkContext tag(String tag, Integer page, String qualifier) {
+            LinkContext result = new LinkContext();
+            result.setVariable("tag", tag);
+            if (page != null) {
+                result.setVariable("page", page);
+            }
+            result.qualifier = qualifier;
+            return result;
+        }
+
+        public static LinkContext item(Long id) {
+            LinkContext result = new LinkContext();
+            result.setId(id);
+            return result;
+        }
+
+        @Override
+        public String getQualifier() {
+            return qualifier;
+        }
+
+        @Override
+        public Object getCacheKey() {
+            return cacheKey;
+        }
+
+        public void setCacheKey(Object cacheKey) {
+            this.cacheKey = cacheKey;
+        }
+
+        public String getSlug() {
+            return "plain-" + getVariables().get("tag");
+        }
+
+        public Long getId() {
+            return id;
+        }
+
+        public void setId(Long id) {
+            this.id = id;
+            addProperty("id");
+        }
+    }
+
+    @ViewHandler
+    public static class GalleryHandler {
+        @View(pattern = "/gallery/${id}.html")
+        public String pictureView(@PathPart("id") String id) {
+            return "gallery-" + id;
+        }
+    }
+
+}
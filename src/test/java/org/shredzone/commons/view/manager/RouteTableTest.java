@@ -0,0 +1,88 @@
+/*
+ * Shredzone Commons
+ *
+ * Copyright (C) 2012 Richard "Shred" Körber
+ *   http://commons.shredzone.org
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Library General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.shredzone.commons.view.manager;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.shredzone.commons.view.annotation.View;
+import org.shredzone.commons.view.annotation.ViewGroup;
+
+/**
+ * Unit tests for {@link RouteTable}.
+ *
+ * @author Richard "Shred" Körber
+ */
+public class RouteTableTest {
+
+    private RouteTable table;
+
+    @Before
+    @ViewGroup({
+        @View(pattern = "/index.html"),
+        @View(pattern = "/blog/index.html"),
+        @View(pattern = "/blog/${page}index.html"),
+        @View(pattern = "/tag/${tag}.html"),
+    })
+    public void setup() throws NoSuchMethodException {
+        Method m = this.getClass().getMethod("setup");
+
+        List<ViewPattern> patterns = new ArrayList<>();
+        for (View view : m.getAnnotation(ViewGroup.class).value()) {
+            patterns.add(new ViewPattern(view, null));
+        }
+
+        table = new RouteTable(patterns, false);
+    }
+
+    /**
+     * Test that constant patterns are resolved by the literal index, unless a pattern
+     * with placeholders takes precedence.
+     */
+    @Test
+    public void literalTest() {
+        // Literal hit, the prebuilt match is returned
+        ViewMatch index = table.resolve("/index.html");
+        Assert.assertEquals("/index.html", index.getPattern().getPattern());
+        Assert.assertEquals(Collections.emptyMap(), index.getPathParts());
+        Assert.assertSame(index, table.resolve("/index.html"));
+
+        // The placeholder pattern has a higher weight, so the constant is not indexed
+        ViewMatch blog = table.resolve("/blog/index.html");
+        Assert.assertEquals("/blog/${page}index.html", blog.getPattern().getPattern());
+        Assert.assertEquals(Collections.singletonMap("page", ""), blog.getPathParts());
+        Assert.assertNotSame(blog, table.resolve("/blog/index.html"));
+
+        // Falls through to the trie
+        ViewMatch tag = table.resolve("/tag/foo.html");
+        Assert.assertEquals("/tag/${tag}.html", tag.getPattern().getPattern());
+        Assert.assertEquals(Collections.singletonMap("tag", "foo"), tag.getPathParts());
+        Assert.assertNotSame(tag, table.resolve("/tag/foo.html"));
+
+        Assert.assertNull(table.resolve("/other.html"));
+    }
+
+}
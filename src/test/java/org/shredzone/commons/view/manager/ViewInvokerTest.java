@@ -0,0 +1,232 @@
+/*
+ * Shredzone Commons
+ *
+ * Copyright (C) 2012 Richard "Shred" Körber
+ *   http://commons.shredzone.org
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Library General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.shredzone.commons.view.manager;
+
+import java.io.IOException;
+import java.lang.reflect.UndeclaredThrowableException;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.shredzone.commons.view.TestViewContext;
+import org.shredzone.commons.view.ViewContext;
+import org.shredzone.commons.view.annotation.Optional;
+import org.shredzone.commons.view.annotation.PathPart;
+import org.shredzone.commons.view.exception.PageNotFoundException;
+import org.shredzone.commons.view.exception.ViewContextException;
+import org.shredzone.commons.view.exception.ViewException;
+import org.springframework.core.convert.ConversionFailedException;
+import org.springframework.core.convert.support.DefaultConversionService;
+
+/**
+ * Unit tests for {@link ViewInvoker}.
+ *
+ * @author Richard "Shred" Körber
+ */
+public class ViewInvokerTest {
+
+    private final DefaultConversionService conversionService = new DefaultConversionService();
+
+    /**
+     * Test if view handlers are invoked, and exceptions are passed through.
+     */
+    @Test
+    public void invokeTest() throws Exception {
+        Handler handler = new Handler();
+        ViewContext context = new TestViewContext(Collections.singletonMap("id", "42"));
+
+        ViewInvoker show = new ViewInvoker(handler, Handler.class.getMethod("show", long.class), conversionService);
+        Assert.assertEquals("show-42", show.invoke(context));
+
+        ViewInvoker list = new ViewInvoker(handler,
+                Handler.class.getMethod("list", long.class, Integer.class, ViewContext.class), conversionService);
+        Assert.assertEquals("list-42-null", list.invoke(context));
+        context.getPathParts().put("page", "3");
+        Assert.assertEquals("list-42-3", list.invoke(context));
+        context.getPathParts().remove("id");
+        try {
+            list.invoke(context);
+            Assert.fail("ViewException expected");
+        } catch (ViewException ex) {
+            Assert.assertEquals("Unsatisfied path part: id", ex.getMessage());
+        }
+
+        ViewInvoker unknown = new ViewInvoker(handler, Handler.class.getMethod("unknown", Date.class), conversionService);
+        try {
+            unknown.invoke(context);
+            Assert.fail("ViewContextException expected");
+        } catch (ViewContextException ex) {
+            Assert.assertEquals("Unknown parameter type java.util.Date", ex.getMessage());
+        }
+
+        ViewInvoker quiet = new ViewInvoker(handler, Handler.class.getMethod("quiet"), conversionService);
+        Assert.assertNull(quiet.invoke(context));
+        Assert.assertTrue(handler.quietInvoked);
+
+        ViewInvoker notFound = new ViewInvoker(handler, Handler.class.getMethod("notFound"), conversionService);
+        try {
+            notFound.invoke(context);
+            Assert.fail("PageNotFoundException expected");
+        } catch (PageNotFoundException ex) {
+            Assert.assertEquals("not found", ex.getMessage());
+        }
+
+        ViewInvoker fail = new ViewInvoker(handler, Handler.class.getMethod("fail"), conversionService);
+        try {
+            fail.invoke(context);
+            Assert.fail("UndeclaredThrowableException expected");
+        } catch (UndeclaredThrowableException ex) {
+            Assert.assertTrue(ex.getCause() instanceof IOException);
+        }
+    }
+
+    /**
+     * Test if a {@link ViewException} wrapped in an {@link IllegalStateException} is
+     * unwrapped, regardless of how the view handler is invoked.
+     */
+    @Test
+    public void unwrapTest() throws Exception {
+        Handler handler = new Handler();
+        ViewContext context = new TestViewContext(Collections.<String, String>emptyMap());
+
+        ViewInvoker wrapped = new ViewInvoker(handler, Handler.class.getMethod("wrapped"), conversionService);
+        ViewInvoker function = new ViewInvoker(handler, Handler.class.getMethod("wrapped"), conversionService,
+                (bean, args) -> ((Handler) bean).wrapped());
+
+        for (ViewInvoker invoker : new ViewInvoker[] {wrapped, function}) {
+            try {
+                invoker.invoke(context);
+                Assert.fail("PageNotFoundException expected");
+            } catch (PageNotFoundException ex) {
+                Assert.assertEquals("wrapped", ex.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Test if parameters are converted to the expected types.
+     */
+    @Test
+    public void convertTest() throws Exception {
+        Handler handler = new Handler();
+        ViewInvoker convert = new ViewInvoker(handler, Handler.class.getMethod("convert",
+                int.class, Long.class, boolean.class, Mode.class, String.class), conversionService, null, true);
+
+        Map<String, String> parts = new HashMap<>();
+        parts.put("n", "-12");
+        parts.put("id", "9000000000");
+        parts.put("flag", "true");
+        parts.put("mode", "LIST");
+        parts.put("name", "foo");
+        Assert.assertEquals("-12/9000000000/true/LIST/foo", convert.invoke(new TestViewContext(parts)));
+
+        // Not covered by the fast paths, converted by the conversion service
+        parts.put("n", " 7");
+        parts.put("id", "0x10");
+        parts.put("flag", "yes");
+        parts.put("mode", " SHOW ");
+        Assert.assertEquals("7/16/true/SHOW/foo", convert.invoke(new TestViewContext(parts)));
+
+        parts.put("n", "99999999999");
+        try {
+            convert.invoke(new TestViewContext(parts));
+            Assert.fail("ConversionFailedException expected");
+        } catch (ConversionFailedException ex) {
+            // expected
+        }
+    }
+
+    /**
+     * Test that converters registered by the application are used, even if they were
+     * registered after the {@link ViewInvoker} was created.
+     */
+    @Test
+    public void customConverterTest() throws Exception {
+        DefaultConversionService customService = new DefaultConversionService();
+        customService.addConverter(String.class, Mode.class, value -> Mode.valueOf(value.toUpperCase()));
+
+        Handler handler = new Handler();
+        ViewInvoker convert = new ViewInvoker(handler, Handler.class.getMethod("convert",
+                int.class, Long.class, boolean.class, Mode.class, String.class), customService);
+        ViewInvoker show = new ViewInvoker(handler, Handler.class.getMethod("show", long.class), customService);
+
+        Map<String, String> parts = new HashMap<>();
+        parts.put("n", "-12");
+        parts.put("id", "9");
+        parts.put("flag", "true");
+        parts.put("mode", "list");
+        parts.put("name", "foo");
+        Assert.assertEquals("-12/9/true/LIST/foo", convert.invoke(new TestViewContext(parts)));
+        Assert.assertEquals("show-9", show.invoke(new TestViewContext(parts)));
+
+        customService.addConverter(String.class, Long.class, value -> Long.parseLong(value.trim()) * 1000L);
+        Assert.assertEquals("-12/9000/true/LIST/foo", convert.invoke(new TestViewContext(parts)));
+        Assert.assertEquals("show-9000", show.invoke(new TestViewContext(parts)));
+    }
+
+    public enum Mode {
+        LIST, SHOW
+    }
+
+    public static class Handler {
+        private boolean quietInvoked = false;
+
+        public String show(@PathPart("id") long id) {
+            return "show-" + id;
+        }
+
+        public String list(@PathPart("id") long id, @Optional @PathPart("page") Integer page,
+                ViewContext context) {
+            Assert.assertNotNull(context);
+            return "list-" + id + "-" + page;
+        }
+
+        public String convert(@PathPart("n") int n, @PathPart("id") Long id,
+                @PathPart("flag") boolean flag, @PathPart("mode") Mode mode,
+                @PathPart("name") String name) {
+            return n + "/" + id + "/" + flag + "/" + mode + "/" + name;
+        }
+
+        public String unknown(Date date) {
+            return "unknown";
+        }
+
+        public void quiet() {
+            quietInvoked = true;
+        }
+
+        public String notFound() throws ViewException {
+            throw new PageNotFoundException("not found");
+        }
+
+        public String wrapped() {
+            throw new IllegalStateException(new PageNotFoundException("wrapped"));
+        }
+
+        public String fail() throws IOException {
+            throw new IOException("failed");
+        }
+    }
+
+}
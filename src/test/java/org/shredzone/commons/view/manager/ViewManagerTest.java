@@ -0,0 +1,234 @@
+/*
+ * Shredzone Commons
+ *
+ * Copyright (C) 2012 Richard "Shred" Körber
+ *   http://commons.shredzone.org
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Library General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.shredzone.commons.view.manager;
+
+import java.lang.reflect.Field;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.shredzone.commons.view.Signature;
+import org.shredzone.commons.view.annotation.View;
+import org.shredzone.commons.view.annotation.ViewHandler;
+import org.springframework.context.support.StaticApplicationContext;
+import org.springframework.util.ReflectionUtils;
+
+/**
+ * Unit tests for {@link ViewManager}.
+ *
+ * @author Richard "Shred" Körber
+ */
+public class ViewManagerTest {
+
+    @Test
+    public void registerTest() {
+        ViewManager manager = new ViewManager();
+        Assert.assertNull(manager.resolve("/blog/index.html"));
+
+        BlogHandler blog = new BlogHandler();
+        manager.registerHandler(blog);
+        RouteTable blogTable = manager.getRouteTable();
+        Assert.assertEquals("index", manager.resolve("/blog/index.html").getPattern().getName());
+        Assert.assertEquals("blogEntry", manager.resolve("/blog/12.html").getPattern().getName());
+        Assert.assertNull(manager.resolve("/gallery/12.html"));
+
+        manager.registerHandler(new GalleryHandler());
+        Assert.assertTrue(manager.getRouteTable().getRevision() > blogTable.getRevision());
+        Assert.assertEquals("picture", manager.resolve("/gallery/12.html").getPattern().getName());
+        Assert.assertEquals("blogEntry", manager.resolve("/blog/12.html").getPattern().getName());
+        Assert.assertNotNull(manager.getViewPatternForSignature(new Signature(new String[] {"id"}), null));
+
+        Assert.assertTrue(manager.unregisterHandler(blog));
+        Assert.assertFalse(manager.unregisterHandler(blog));
+        Assert.assertNull(manager.resolve("/blog/12.html"));
+        Assert.assertEquals("picture", manager.resolve("/gallery/12.html").getPattern().getName());
+
+        // The previous snapshot is unchanged
+        Assert.assertEquals("blogEntry", blogTable.resolve("/blog/12.html").getPattern().getName());
+        Assert.assertNull(blogTable.resolve("/gallery/12.html"));
+    }
+
+    @Test
+    public void conflictTest() {
+        ViewManager manager = new ViewManager();
+        manager.registerHandler(new GalleryHandler());
+        RouteTable table = manager.getRouteTable();
+
+        try {
+            manager.registerHandler(new GalleryHandler());
+            Assert.fail("duplicate signature was accepted");
+        } catch (IllegalStateException ex) {
+            // expected
+        }
+
+        Assert.assertSame(table, manager.getRouteTable());
+    }
+
+    @Test
+    public void parallelSetupTest() {
+        Object[] handlers = {
+            new BlogHandler(), new GalleryHandler(), new ArchiveHandler(), new TagHandler(),
+        };
+
+        ViewManager sequential = setup(false, handlers);
+        ViewManager parallel = setup(true, handlers);
+        Assert.assertEquals(describe(sequential), describe(parallel));
+        Assert.assertEquals(13, sequential.getRouteTable().getViewPatterns().size());
+
+        for (String path : new String[] {"/blog/index.html", "/blog/12.html", "/gallery/12.html",
+                    "/archive/2020/05.html", "/tag/foo/index.html", "/tag/foo/3.html"}) {
+            Assert.assertEquals(path,
+                    sequential.resolve(path).getPattern().getName(),
+                    parallel.resolve(path).getPattern().getName());
+        }
+
+        Object[] conflicting = {
+            new BlogHandler(), new GalleryHandler(), new ArchiveHandler(), new GalleryHandler(),
+        };
+
+        String sequentialError = null;
+        try {
+            setup(false, conflicting);
+            Assert.fail("duplicate signature was accepted");
+        } catch (IllegalStateException ex) {
+            sequentialError = ex.getMessage();
+        }
+
+        try {
+            setup(true, conflicting);
+            Assert.fail("duplicate signature was accepted");
+        } catch (IllegalStateException ex) {
+            Assert.assertEquals(sequentialError, ex.getMessage());
+        }
+    }
+
+    /**
+     * Sets up a {@link ViewManager} with the given handler beans.
+     */
+    private static ViewManager setup(boolean parallelSetup, Object... handlers) {
+        StaticApplicationContext appContext = new StaticApplicationContext();
+        appContext.refresh();
+        for (int ix = 0; ix < handlers.length; ix++) {
+            appContext.getBeanFactory().registerSingleton("handler" + ix, handlers[ix]);
+        }
+
+        ViewManager manager = new ViewManager();
+        Field field = ReflectionUtils.findField(ViewManager.class, "applicationContext");
+        ReflectionUtils.makeAccessible(field);
+        ReflectionUtils.setField(field, manager, appContext);
+        manager.setParallelSetup(parallelSetup);
+        manager.setup();
+        return manager;
+    }
+
+    /**
+     * Describes the view patterns of the route table, in their order.
+     */
+    private static List<String> describe(ViewManager manager) {
+        return manager.getRouteTable().getViewPatterns().stream()
+                .map(vp -> vp.getName() + ":" + vp.getPattern() + ":" + vp.getInvoker().getBean().getClass().getSimpleName())
+                .collect(Collectors.toList());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void noHandlerTest() {
+        new ViewManager().registerHandler(new Object());
+    }
+
+    @ViewHandler
+    public static class BlogHandler {
+        @View(pattern = "/blog/index.html")
+        public String indexView() {
+            return null;
+        }
+
+        @View(pattern = "/blog/${id}.html")
+        public String blogEntryView() {
+            return null;
+        }
+    }
+
+    @ViewHandler
+    public static class ArchiveHandler {
+        @View(pattern = "/archive/index.html")
+        public String indexView() {
+            return null;
+        }
+
+        @View(pattern = "/archive/${year}/index.html")
+        public String yearView() {
+            return null;
+        }
+
+        @View(pattern = "/archive/${year}/${month}.html")
+        public String monthView() {
+            return null;
+        }
+
+        @View(pattern = "/archive/${year}/${month}/${day}.html")
+        public String dayView() {
+            return null;
+        }
+    }
+
+    @ViewHandler
+    public static class TagHandler {
+        @View(pattern = "/tag/index.html")
+        public String indexView() {
+            return null;
+        }
+
+        @View(pattern = "/tag/${tag}/index.html")
+        public String tagView() {
+            return null;
+        }
+
+        @View(pattern = "/tag/${tag}/${page}.html")
+        public String tagPageView() {
+            return null;
+        }
+
+        @View(pattern = "/tag/${tag}.xml")
+        public String tagFeedView() {
+            return null;
+        }
+
+        @View(pattern = "/tag/${tag}/${page}.xml")
+        public String tagPageFeedView() {
+            return null;
+        }
+
+        @View(pattern = "/tag/cloud.html")
+        public String cloudView() {
+            return null;
+        }
+    }
+
+    @ViewHandler
+    public static class GalleryHandler {
+        @View(pattern = "/gallery/${id}.html", signature = "id")
+        public String pictureView() {
+            return null;
+        }
+    }
+
+}
@@ -0,0 +1,169 @@
+/*
+ * Shredzone Commons
+ *
+ * Copyright (C) 2012 Richard "Shred" Körber
+ *   http://commons.shredzone.org
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Library General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.shredzone.commons.view.manager;
+
+import java.lang.annotation.Annotation;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.shredzone.commons.view.annotation.View;
+
+/**
+ * Differential tests of the {@link ViewPattern} matcher against the regular
+ * expression of the pattern.
+ *
+ * @author Richard "Shred" Körber
+ */
+public class ViewPatternMatcherTest {
+
+    private static final String[] PATTERN_TOKENS = {
+        "/", "/", "a", "b", "ab", ".", "-", "${x}", "${y}", "${z}",
+    };
+    private static final char[] PATH_CHARS = { '/', 'a', 'b', '.', '-' };
+
+    @Test
+    public void fixedTest() {
+        String[] patterns = {
+            "", "/", "/a", "/${x}", "${x}", "/${x}${y}", "/${x}-${y}", "/${x}.${y}.html",
+            "/a/${x}/b", "/${x}/${x}", "${x}/", "/${x}a${y}a",
+        };
+        String[] paths = {
+            "", "/", "/a", "/b", "a", "/ab", "/a-b", "/a-b-c", "/a.b.html", "/a.b.c.html",
+            "/a/x/b", "/a//b", "/x/y", "//", "/aaa", "/aa", "x/", "/a/",
+        };
+
+        for (String pattern : patterns) {
+            ViewPattern vp = createPattern(pattern);
+            for (String path : paths) {
+                assertSameResult(vp, path);
+            }
+        }
+    }
+
+    @Test
+    public void randomTest() {
+        Random rnd = new Random(4711L);
+
+        for (int ix = 0; ix < 2000; ix++) {
+            ViewPattern vp = createPattern(randomPattern(rnd));
+            for (int jx = 0; jx < 50; jx++) {
+                assertSameResult(vp, randomPath(rnd));
+            }
+        }
+    }
+
+    @Test
+    public void trieTest() {
+        Random rnd = new Random(815L);
+
+        List<ViewPattern> patterns = new ArrayList<>();
+        for (int ix = 0; ix < 300; ix++) {
+            patterns.add(createPattern(randomPattern(rnd)));
+        }
+        Collections.sort(patterns);
+
+        ViewPatternTrie trie = new ViewPatternTrie(patterns, false);
+        ViewPatternTrie regExTrie = new ViewPatternTrie(patterns, true);
+
+        for (int ix = 0; ix < 5000; ix++) {
+            String path = randomPath(rnd);
+
+            ViewPattern expected = null;
+            for (ViewPattern vp : patterns) {
+                if (vp.getRegEx().matcher(path).matches()) {
+                    expected = vp;
+                    break;
+                }
+            }
+
+            ViewMatch match = trie.resolve(path);
+            ViewMatch regExMatch = regExTrie.resolve(path);
+
+            if (expected == null) {
+                Assert.assertNull("path " + path, match);
+                Assert.assertNull("path " + path, regExMatch);
+            } else {
+                Assert.assertSame("path " + path, expected, match.getPattern());
+                Assert.assertSame("path " + path, expected, regExMatch.getPattern());
+                Assert.assertEquals("path " + path, match.getPathParts(), regExMatch.getPathParts());
+            }
+        }
+    }
+
+    private void assertSameResult(ViewPattern vp, String path) {
+        String msg = "pattern '" + vp.getPattern() + "', path '" + path + "'";
+        boolean regExMatches = vp.getRegEx().matcher(path).matches();
+        Assert.assertEquals(msg, regExMatches, vp.matches(path));
+        Assert.assertEquals(msg, vp.resolveRegEx(path), vp.resolve(path));
+    }
+
+    private String randomPattern(Random rnd) {
+        StringBuilder sb = new StringBuilder();
+        int len = rnd.nextInt(7);
+        for (int ix = 0; ix < len; ix++) {
+            sb.append(PATTERN_TOKENS[rnd.nextInt(PATTERN_TOKENS.length)]);
+        }
+        return sb.toString();
+    }
+
+    private String randomPath(Random rnd) {
+        StringBuilder sb = new StringBuilder();
+        int len = rnd.nextInt(9);
+        for (int ix = 0; ix < len; ix++) {
+            sb.append(PATH_CHARS[rnd.nextInt(PATH_CHARS.length)]);
+        }
+        return sb.toString();
+    }
+
+    private ViewPattern createPattern(String pattern) {
+        return new ViewPattern(new View() {
+            @Override
+            public Class<? extends Annotation> annotationType() {
+                return View.class;
+            }
+
+            @Override
+            public String name() {
+                return "";
+            }
+
+            @Override
+            public String pattern() {
+                return pattern;
+            }
+
+            @Override
+            public String[] signature() {
+                return new String[0];
+            }
+
+            @Override
+            public String qualifier() {
+                return "";
+            }
+        }, null);
+    }
+
+}
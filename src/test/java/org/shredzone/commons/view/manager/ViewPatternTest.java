@@ -20,6 +20,7 @@
 
 package org.shredzone.commons.view.manager;
 
+import java.io.IOException;
 import java.lang.reflect.Method;
 import java.util.Iterator;
 import java.util.Map;
@@ -28,8 +29,12 @@ import java.util.TreeSet;
 
 import org.junit.Assert;
 import org.junit.Test;
+import org.shredzone.commons.view.AbstractPathContext;
+import org.shredzone.commons.view.Signature;
 import org.shredzone.commons.view.annotation.View;
 import org.shredzone.commons.view.annotation.ViewGroup;
+import org.shredzone.commons.view.util.BoundEvaluationContext;
+import org.shredzone.commons.view.util.ViewPathEvaluationContext;
 
 /**
  * Unit tests for {@link ViewPattern}.
@@ -79,6 +84,65 @@ public class ViewPatternTest {
 
     }
 
+    @Test
+    @View(pattern = "/${id}/${title}/${id}.html")
+    public void pathPartsTest() throws NoSuchMethodException {
+        Method m = this.getClass().getMethod("pathPartsTest");
+
+        ViewPattern pat = new ViewPattern(m.getAnnotation(View.class), null);
+
+        Map<String, String> map = pat.resolve("/12/Hello/34.html");
+        Assert.assertNotNull(map);
+        Assert.assertEquals(2, map.size());
+        Assert.assertEquals("34", map.get("id"));
+        Assert.assertEquals("Hello", map.get("title"));
+        Assert.assertNull(map.get("foo"));
+        Assert.assertEquals("{id=34, title=Hello}", map.toString());
+
+        try {
+            map.put("foo", "bar");
+            Assert.fail("path parts are modifiable");
+        } catch (UnsupportedOperationException ex) {
+            // We expected this exception
+        }
+    }
+
+    @Test
+    @View(pattern = "/${#encode(name)}/${title}.html")
+    public void decodeTest() throws NoSuchMethodException {
+        Method m = this.getClass().getMethod("decodeTest");
+
+        ViewPattern pat = new ViewPattern(m.getAnnotation(View.class), null);
+
+        Map<String, String> map = pat.resolve("/a+b%21/c+d%21.html");
+        Assert.assertNotNull(map);
+        Assert.assertEquals("a b!", map.get("#encode(name)"));
+        Assert.assertEquals("c+d%21", map.get("title"));
+    }
+
+    @Test
+    @View(pattern = "/${#encode(name)}/${title}.html")
+    public void malformedEscapeTest() throws NoSuchMethodException {
+        Method m = this.getClass().getMethod("malformedEscapeTest");
+
+        ViewPattern pat = new ViewPattern(m.getAnnotation(View.class), null);
+
+        for (String path : new String[] {"/a%zz/b.html", "/a%2/b.html", "/a%/b.html"}) {
+            try {
+                pat.resolve(path);
+                Assert.fail("malformed escape accepted: " + path);
+            } catch (IllegalArgumentException ex) {
+                // We expected this exception
+            }
+        }
+
+        // Path parts that are not decoded are not checked
+        Map<String, String> map = pat.resolve("/a%21/b%zz.html");
+        Assert.assertNotNull(map);
+        Assert.assertEquals("a!", map.get("#encode(name)"));
+        Assert.assertEquals("b%zz", map.get("title"));
+    }
+
     @Test
     @ViewGroup({
         @View(pattern = "test/${blafoo}.html"),
@@ -100,4 +164,122 @@ public class ViewPatternTest {
         Assert.assertEquals("test.html", it.next().getPattern());
     }
 
+    @Test
+    @View(pattern = "/tag/${#encode(#tag)}/it's//${#page}.html")
+    public void evaluateTest() throws NoSuchMethodException {
+        Method m = this.getClass().getMethod("evaluateTest");
+        ViewPattern pat = new ViewPattern(m.getAnnotation(View.class), null);
+
+        AbstractPathContext data = createPathContext();
+        data.setVariable("tag", "a b");
+        data.setVariable("page", 2);
+
+        ViewPathEvaluationContext context = new ViewPathEvaluationContext(data);
+        Assert.assertEquals("/tag/a+b/it's/2.html", pat.evaluate(context, data));
+        Assert.assertEquals(5, pat.getExpression().size());
+        Assert.assertEquals("/tag/", pat.getExpression().get(0).getValue());
+
+        ViewPathEvaluationContext template = new ViewPathEvaluationContext();
+        Assert.assertEquals("/tag/a+b/it's/2.html", pat.evaluate(new BoundEvaluationContext(template, data), data));
+
+        data.setVariable("page", null);
+        Assert.assertNull(pat.evaluate(new ViewPathEvaluationContext(data), data));
+        Assert.assertNull(pat.evaluate(new BoundEvaluationContext(template, data), data));
+    }
+
+    @Test
+    @View(pattern = "/tag/${#tag}/${#page}.html")
+    public void appendTest() throws NoSuchMethodException, IOException {
+        Method m = this.getClass().getMethod("appendTest");
+        ViewPattern pat = new ViewPattern(m.getAnnotation(View.class), null);
+
+        AbstractPathContext data = createPathContext();
+        data.setVariable("tag", "foo");
+        data.setVariable("page", 2);
+
+        StringBuilder sb = new StringBuilder();
+        Assert.assertTrue(pat.evaluate(new ViewPathEvaluationContext(data), data, "http://localhost/app", sb));
+        Assert.assertEquals("http://localhost/app/tag/foo/2.html", sb.toString());
+
+        data.setVariable("tag", "");
+        sb.setLength(0);
+        Assert.assertTrue(pat.evaluate(new ViewPathEvaluationContext(data), data, "", sb));
+        Assert.assertEquals("/tag/2.html", sb.toString());
+        Assert.assertEquals("/tag/2.html", pat.evaluate(new ViewPathEvaluationContext(data), data));
+
+        data.setVariable("page", null);
+        sb.setLength(0);
+        Assert.assertFalse(pat.evaluate(new ViewPathEvaluationContext(data), data, "http://localhost/app", sb));
+        Assert.assertEquals(0, sb.length());
+    }
+
+    @Test
+    public void requirementsTest() {
+        Assert.assertEquals(new Signature(new String[] {"#tag"}),
+                requirements("/tag/${#encode(#tag)}/${page}.html"));
+        Assert.assertEquals(new Signature(new String[] {"#picture"}),
+                requirements("/picture/${#picture.id}/${#simplify(#picture.title)}.html"));
+        Assert.assertEquals(new Signature(new String[] {"#page"}),
+                requirements("/${#page}/${#page2 ?: 1}/${#other(#x)}/${qualifier}.html"));
+        Assert.assertEquals(new Signature(new String[0]),
+                requirements("/index.html"));
+
+        ViewPathEvaluationContext template = new ViewPathEvaluationContext();
+        AbstractPathContext data = createPathContext();
+        data.setVariable("tag", "foo");
+        ViewPattern pat = new ViewPattern("test", "/tag/${#tag}/${#site}/${page}.html", null, null, 0, null);
+        Assert.assertFalse(pat.isSatisfiedBy(data.getSignature(), new BoundEvaluationContext(template, data)));
+
+        data.setVariable("site", "example");
+        Assert.assertTrue(pat.isSatisfiedBy(data.getSignature(), new BoundEvaluationContext(template, data)));
+
+        // Variables may also be provided by the template context
+        AbstractPathContext tagOnly = createPathContext();
+        tagOnly.setVariable("tag", "foo");
+        template.setVariable("site", "example");
+        Assert.assertTrue(pat.isSatisfiedBy(tagOnly.getSignature(), new BoundEvaluationContext(template, tagOnly)));
+        Assert.assertFalse(pat.isSatisfiedBy(createPathContext().getSignature(),
+                new BoundEvaluationContext(template, createPathContext())));
+    }
+
+    private static Signature requirements(String pattern) {
+        return new ViewPattern("test", pattern, null, null, 0, null).getRequirements();
+    }
+
+    /**
+     * Creates an empty {@link AbstractPathContext} with the standard qualifier.
+     */
+    private static AbstractPathContext createPathContext() {
+        return new AbstractPathContext() {
+            @Override
+            public String getQualifier() {
+                return null;
+            }
+        };
+    }
+
+    @Test
+    @View(pattern = "/page/${#page}.html")
+    public void compileTest() throws NoSuchMethodException {
+        Method m = this.getClass().getMethod("compileTest");
+        ViewPattern pat = new ViewPattern(m.getAnnotation(View.class), null);
+
+        AbstractPathContext data = createPathContext();
+
+        for (int ix = 0; ix < 10; ix++) {
+            data.setVariable("page", ix);
+            Assert.assertEquals("/page/" + ix + ".html", pat.evaluate(new ViewPathEvaluationContext(data), data));
+        }
+        Assert.assertEquals(1L, pat.getInterpretedEvaluations());
+        Assert.assertEquals(9L, pat.getCompiledEvaluations());
+
+        // Compiled code expects an Integer, so it falls back to the interpreter
+        data.setVariable("page", "last");
+        Assert.assertEquals("/page/last.html", pat.evaluate(new ViewPathEvaluationContext(data), data));
+        data.setVariable("page", 12);
+        Assert.assertEquals("/page/12.html", pat.evaluate(new ViewPathEvaluationContext(data), data));
+        Assert.assertEquals(3L, pat.getInterpretedEvaluations());
+        Assert.assertEquals(9L, pat.getCompiledEvaluations());
+    }
+
 }
@@ -0,0 +1,198 @@
+/*
+ * Shredzone Commons
+ *
+ * Copyright (C) 2012 Richard "Shred" Körber
+ *   http://commons.shredzone.org
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Library General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.shredzone.commons.view.manager;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.shredzone.commons.view.annotation.View;
+import org.shredzone.commons.view.annotation.ViewGroup;
+
+/**
+ * Unit tests for {@link ViewPatternTrie}.
+ *
+ * @author Richard "Shred" Körber
+ */
+public class ViewPatternTrieTest {
+
+    private List<ViewPattern> patterns;
+    private ViewPatternTrie trie;
+    private PathFilter filter;
+
+    @Before
+    @ViewGroup({
+        @View(pattern = "/index.html"),
+        @View(pattern = "/${page}.html"),
+        @View(pattern = "/tag/${tag}.html"),
+        @View(pattern = "/tag/${tag}/${page}.html"),
+        @View(pattern = "/tag/index.html"),
+        @View(pattern = "/tag/${tag}.xml"),
+        @View(pattern = "/picture/${id}/${title}.html"),
+        @View(pattern = "/picture/${id}/index.html"),
+        @View(pattern = "/${section}/${id}/index.html"),
+        @View(pattern = "/${a}-${b}/${c}"),
+        @View(pattern = "/hello${name}.html"),
+        @View(pattern = "/"),
+        @View(pattern = ""),
+        @View(pattern = "relative/${x}"),
+        @View(pattern = "/item/${id}"),
+        @View(pattern = "/item/${id}.${ext}"),
+        @View(pattern = "/item/v${version}"),
+        @View(pattern = "/item/v${version}.${ext}"),
+    })
+    public void setup() throws NoSuchMethodException {
+        Method m = this.getClass().getMethod("setup");
+
+        patterns = new ArrayList<>();
+        for (View view : m.getAnnotation(ViewGroup.class).value()) {
+            patterns.add(new ViewPattern(view, null));
+        }
+        Collections.sort(patterns);
+
+        trie = new ViewPatternTrie(patterns);
+        filter = new PathFilter(patterns);
+    }
+
+    /**
+     * Test that the trie gives the same result as matching all patterns in order.
+     */
+    @Test
+    public void equivalenceTest() {
+        String[] paths = {
+            "/index.html", "/about.html", "/.html", "/tag/index.html", "/tag/foo.html",
+            "/tag/foo.xml", "/tag/foo/2.html", "/tag//.html", "/picture/12/index.html",
+            "/picture/12/foo.html", "/picture/12/foo.xml", "/blog/12/index.html",
+            "/foo-bar/baz", "/foo-bar-baz/", "/-/", "/hello.html", "/hellomoon.html",
+            "/", "", "relative/", "relative/x", "relative/x/y", "/relative/x",
+            "/tag", "/tag/", "/foo/bar/baz/qux", "index.html", "//index.html",
+            "/item/", "/item/12", "/item/12.json", "/item/v2", "/item/v2.json",
+            "/item/v.", "/item/.", "/item/12/",
+        };
+
+        for (String path : paths) {
+            ViewMatch match = trie.resolve(path);
+            ViewPattern expected = linearScan(path);
+
+            if (expected == null) {
+                Assert.assertNull("path " + path, match);
+            } else {
+                Assert.assertNotNull("path " + path, match);
+                Assert.assertTrue("path " + path, filter.accepts(path));
+                Assert.assertSame("path " + path, expected, match.getPattern());
+                Assert.assertEquals("path " + path, expected.resolve(path), match.getPathParts());
+            }
+        }
+    }
+
+    @Test
+    public void precedenceTest() {
+        Assert.assertEquals("/tag/index.html", trie.resolve("/tag/index.html").getPattern().getPattern());
+        Assert.assertEquals("/tag/${tag}.html", trie.resolve("/tag/foo.html").getPattern().getPattern());
+        Assert.assertEquals("/picture/${id}/index.html", trie.resolve("/picture/1/index.html").getPattern().getPattern());
+        Assert.assertEquals("/${section}/${id}/index.html", trie.resolve("/blog/1/index.html").getPattern().getPattern());
+
+        Map<String, String> parts = trie.resolve("/foo-bar-baz/qux").getPathParts();
+        Assert.assertEquals("foo-bar", parts.get("a"));
+        Assert.assertEquals("baz", parts.get("b"));
+        Assert.assertEquals("qux", parts.get("c"));
+
+        Assert.assertNull(trie.resolve("/nothing/here"));
+    }
+
+    @Test
+    public void disjointTest() {
+        Assert.assertTrue(find("/tag/${tag}.html").isDisjoint(find("/tag/${tag}.xml")));
+        Assert.assertTrue(find("/item/${id}").isDisjoint(find("/tag/${tag}.xml")));
+        Assert.assertTrue(find("/tag/${tag}.html").isDisjoint(find("/tag/${tag}/${page}.html")));
+        Assert.assertFalse(find("/item/${id}").isDisjoint(find("/item/${id}.${ext}")));
+        Assert.assertFalse(find("/item/${id}").isDisjoint(find("/item/v${version}")));
+        Assert.assertFalse(find("/tag/${tag}.html").isDisjoint(find("/tag/index.html")));
+        Assert.assertTrue(find("/tag/${tag}.xml").isDisjoint(find("/tag/index.html")));
+        Assert.assertFalse(find("/${section}/${id}/index.html").isDisjoint(find("/picture/${id}/${title}.html")));
+    }
+
+    @Test
+    public void adaptiveTest() {
+        for (int ix = 0; ix < 5000; ix++) {
+            Assert.assertEquals("/tag/${tag}.xml", trie.resolve("/tag/foo" + ix + ".xml").getPattern().getPattern());
+        }
+
+        BucketStatistics stats = trie.getStatistics().stream()
+                .filter(bs -> bs.getPatterns().contains(find("/tag/${tag}.xml")))
+                .findFirst()
+                .get();
+        Assert.assertEquals("/tag/${tag}.xml", stats.getPatterns().get(0).getPattern());
+        Assert.assertEquals(5000L, stats.getHits(0));
+        Assert.assertEquals(5000L, stats.getLookups());
+        Assert.assertEquals(1L, stats.getReorders());
+
+        // Patterns that are not disjoint keep their order of precedence
+        for (int ix = 0; ix < 5000; ix++) {
+            Assert.assertEquals("/item/v${version}", trie.resolve("/item/v" + ix).getPattern().getPattern());
+        }
+        Assert.assertEquals("/item/v${version}", trie.resolve("/item/v").getPattern().getPattern());
+        Assert.assertEquals("/item/${id}", trie.resolve("/item/12").getPattern().getPattern());
+
+        equivalenceTest();
+    }
+
+    @Test
+    public void filterTest() {
+        Assert.assertTrue(filter.accepts("/tag/foo.html"));
+        Assert.assertTrue(filter.accepts("relative/foo"));
+        Assert.assertFalse(filter.accepts("/a/b/c/d/e"));
+
+        PathFilter constant = new PathFilter(patterns.subList(patterns.size() - 2, patterns.size()));
+        Assert.assertTrue(constant.accepts("/"));
+        Assert.assertTrue(constant.accepts(""));
+        Assert.assertFalse(constant.accepts("/wp-login.php"));
+
+        PathFilter heads = new PathFilter(patterns.stream()
+                .filter(vp -> vp.getPattern().startsWith("/tag/") || vp.getPattern().startsWith("relative/"))
+                .collect(Collectors.toList()));
+        Assert.assertTrue(heads.accepts("/tag/foo.html"));
+        Assert.assertTrue(heads.accepts("relative/foo"));
+        Assert.assertFalse(heads.accepts("/.env/foo"));
+        Assert.assertFalse(heads.accepts("/tags/foo"));
+        Assert.assertFalse(heads.accepts("/ta/foo"));
+    }
+
+    private ViewPattern find(String pattern) {
+        return patterns.stream().filter(vp -> vp.getPattern().equals(pattern)).findFirst().get();
+    }
+
+    private ViewPattern linearScan(String path) {
+        for (ViewPattern vp : patterns) {
+            if (vp.matches(path)) {
+                return vp;
+            }
+        }
+        return null;
+    }
+
+}
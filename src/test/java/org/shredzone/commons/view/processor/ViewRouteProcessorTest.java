@@ -0,0 +1,294 @@
+/*
+ * Shredzone Commons
+ *
+ * Copyright (C) 2012 Richard "Shred" Körber
+ *   http://commons.shredzone.org
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Library General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.shredzone.commons.view.processor;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.jar.JarFile;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Test;
+import org.shredzone.commons.view.manager.ViewManager;
+import org.shredzone.commons.view.manager.ViewPattern;
+import org.shredzone.commons.view.manager.ViewRoute;
+import org.shredzone.commons.view.manager.ViewRoutes;
+import org.shredzone.commons.view.util.ViewRouteUtils;
+
+/**
+ * Unit tests for {@link ViewRouteProcessor}.
+ *
+ * @author Richard "Shred" Körber
+ */
+public class ViewRouteProcessorTest {
+
+    private static final String HANDLER =
+              "package com.example;\n"
+            + "import org.shredzone.commons.view.annotation.*;\n"
+            + "@ViewHandler\n"
+            + "public class BlogHandler {\n"
+            + "    @View(pattern = \"/blog/${id}.html\", signature = {\"id\"}, qualifier = \"mobile\")\n"
+            + "    public String entryView(@PathPart(\"id\") long id, String text) {\n"
+            + "        return \"entry-\" + id + \"-\" + text;\n"
+            + "    }\n"
+            + "    @ViewGroup({\n"
+            + "        @View(pattern = \"/blog/index.html\", name = \"index\"),\n"
+            + "        @View(pattern = \"/blog/\\\"quoted\\\".html\", name = \"quoted\"),\n"
+            + "    })\n"
+            + "    public void overview() {\n"
+            + "    }\n"
+            + "    public String noView() {\n"
+            + "        return null;\n"
+            + "    }\n"
+            + "}\n";
+
+    private static final String GALLERY_HANDLER =
+              "package com.example;\n"
+            + "import org.shredzone.commons.view.annotation.*;\n"
+            + "@ViewHandler\n"
+            + "public class GalleryHandler {\n"
+            + "    @View(pattern = \"/gallery/${id}/${page}.html\", name = \"picture\")\n"
+            + "    @View(pattern = \"/gallery/${id}/${page}.xml\", name = \"picture\", qualifier = \"feed\")\n"
+            + "    public String pictureView(@PathPart(\"id\") int id, @PathPart(\"page\") long page,\n"
+            + "            boolean large, double scale, char mode, @Qualifier String qualifier) {\n"
+            + "        return id + \"/\" + page + \"/\" + large + \"/\" + scale + \"/\" + mode + \"/\" + qualifier;\n"
+            + "    }\n"
+            + "}\n";
+
+    private static final String TIE_HANDLER =
+              "package com.example;\n"
+            + "import org.shredzone.commons.view.annotation.*;\n"
+            + "@ViewHandler\n"
+            + "public class TieHandler {\n"
+            + "    @View(pattern = \"/tie/${b}.html\")\n"
+            + "    public String zetaView() {\n"
+            + "        return null;\n"
+            + "    }\n"
+            + "    @View(pattern = \"/tie/${a}.html\")\n"
+            + "    @View(pattern = \"/tie/${a}.xml\")\n"
+            + "    public String alphaView() {\n"
+            + "        return null;\n"
+            + "    }\n"
+            + "    @View(pattern = \"/tie/${c}.xml\")\n"
+            + "    public String alphaView(String c) {\n"
+            + "        return null;\n"
+            + "    }\n"
+            + "}\n";
+
+    @Test
+    public void generateTest() throws Exception {
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        Assume.assumeNotNull(compiler);
+
+        Path dir = compile(compiler, "BlogHandler", HANDLER);
+
+        try (URLClassLoader cl = new URLClassLoader(new URL[] {dir.toUri().toURL()}, getClass().getClassLoader())) {
+            Class<?> handlerClass = cl.loadClass("com.example.BlogHandler");
+            Object handler = handlerClass.getDeclaredConstructor().newInstance();
+
+            ViewRoutes routes = (ViewRoutes) cl.loadClass("com.example.BlogHandler" + ViewRoutes.SUFFIX)
+                    .getDeclaredConstructor().newInstance();
+            List<ViewRoute> list = routes.getRoutes();
+            Assert.assertEquals(3, list.size());
+
+            ViewRoute entry = list.stream().filter(r -> r.getName().equals("entry")).findFirst().get();
+            Assert.assertEquals("/blog/${id}.html", entry.getPattern());
+            Assert.assertArrayEquals(new String[] {"id"}, entry.getSignature());
+            Assert.assertEquals("mobile", entry.getQualifier());
+            Assert.assertEquals(ViewRouteUtils.computeWeight("/blog/${id}.html"), entry.getWeight());
+            Assert.assertEquals("entryView", entry.getMethodName());
+            Assert.assertArrayEquals(new Class<?>[] {long.class, String.class}, entry.getParameterTypes());
+            Assert.assertEquals("entry-42-foo", entry.getFunction().invoke(handler, new Object[] {42L, "foo"}));
+
+            ViewRoute quoted = list.stream().filter(r -> r.getName().equals("quoted")).findFirst().get();
+            Assert.assertEquals("/blog/\"quoted\".html", quoted.getPattern());
+            Assert.assertNull(quoted.getQualifier());
+            Assert.assertEquals(0, quoted.getSignature().length);
+            Assert.assertNull(quoted.getFunction().invoke(handler, new Object[0]));
+
+            ViewManager manager = new ViewManager();
+            manager.registerHandler(handler);
+            Assert.assertEquals("index", manager.resolve("/blog/index.html").getPattern().getName());
+            Assert.assertEquals("entry", manager.resolve("/blog/12.html").getPattern().getName());
+        }
+    }
+
+    @Test
+    public void multipleViewsTest() throws Exception {
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        Assume.assumeNotNull(compiler);
+
+        Path dir = compile(compiler, "GalleryHandler", GALLERY_HANDLER);
+
+        try (URLClassLoader cl = new URLClassLoader(new URL[] {dir.toUri().toURL()}, getClass().getClassLoader())) {
+            Object handler = cl.loadClass("com.example.GalleryHandler").getDeclaredConstructor().newInstance();
+
+            ViewRoutes routes = (ViewRoutes) cl.loadClass("com.example.GalleryHandler" + ViewRoutes.SUFFIX)
+                    .getDeclaredConstructor().newInstance();
+            List<ViewRoute> list = routes.getRoutes();
+            Assert.assertEquals(2, list.size());
+
+            ViewRoute html = list.get(0);
+            Assert.assertEquals("picture", html.getName());
+            Assert.assertEquals("/gallery/${id}/${page}.html", html.getPattern());
+            Assert.assertNull(html.getQualifier());
+
+            ViewRoute feed = list.get(1);
+            Assert.assertEquals("picture", feed.getName());
+            Assert.assertEquals("/gallery/${id}/${page}.xml", feed.getPattern());
+            Assert.assertEquals("feed", feed.getQualifier());
+            Assert.assertEquals(ViewRouteUtils.computeWeight("/gallery/${id}/${page}.xml"), feed.getWeight());
+
+            Class<?>[] types = {int.class, long.class, boolean.class, double.class, char.class, String.class};
+            Assert.assertArrayEquals(types, html.getParameterTypes());
+            Assert.assertArrayEquals(types, feed.getParameterTypes());
+
+            Object[] args = {12, 3L, true, 0.5, 'x', "feed"};
+            Assert.assertEquals("12/3/true/0.5/x/feed", feed.getFunction().invoke(handler, args));
+            Assert.assertEquals("12/3/true/0.5/x/feed", html.getFunction().invoke(handler, args));
+
+            ViewManager manager = new ViewManager();
+            manager.registerHandler(handler);
+            Assert.assertNull(manager.resolve("/gallery/12/3.html").getPattern().getQualifier());
+            Assert.assertEquals("feed", manager.resolve("/gallery/12/3.xml").getPattern().getQualifier());
+        }
+    }
+
+    /**
+     * Test that patterns of equal weight are in the same order, whether the routes were
+     * generated or scanned by reflection.
+     */
+    @Test
+    public void tieOrderTest() throws Exception {
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        Assume.assumeNotNull(compiler);
+
+        Path generatedDir = compile(compiler, "TieHandler", TIE_HANDLER);
+        Path reflectedDir = compile(compiler, "TieHandler", TIE_HANDLER, false);
+
+        List<String> expected = Arrays.asList("/tie/${a}.html", "/tie/${b}.html", "/tie/${a}.xml", "/tie/${c}.xml");
+        Assert.assertEquals(expected, patternOrder(generatedDir, "TieHandler"));
+        Assert.assertEquals(expected, patternOrder(reflectedDir, "TieHandler"));
+    }
+
+    /**
+     * Registers a compiled view handler, and returns the resulting order of its view
+     * patterns.
+     */
+    private List<String> patternOrder(Path dir, String className) throws Exception {
+        try (URLClassLoader cl = new URLClassLoader(new URL[] {dir.toUri().toURL()}, getClass().getClassLoader())) {
+            Object handler = cl.loadClass("com.example." + className).getDeclaredConstructor().newInstance();
+
+            ViewManager manager = new ViewManager();
+            manager.registerHandler(handler);
+            return manager.getRouteTable().getViewPatterns().stream()
+                    .map(ViewPattern::getPattern)
+                    .collect(Collectors.toList());
+        }
+    }
+
+    /**
+     * Compiles a view handler with the {@link ViewRouteProcessor}. Only the classes of
+     * this project are on the processor path, so the processor must not depend on any
+     * other library.
+     *
+     * @param compiler
+     *            {@link JavaCompiler} to use
+     * @param className
+     *            Simple name of the view handler class in the "com.example" package
+     * @param source
+     *            Source code of the view handler
+     * @return Directory containing the compiled and generated classes
+     */
+    private static Path compile(JavaCompiler compiler, String className, String source) throws Exception {
+        return compile(compiler, className, source, true);
+    }
+
+    /**
+     * Compiles a view handler, with or without the {@link ViewRouteProcessor}.
+     */
+    private static Path compile(JavaCompiler compiler, String className, String source, boolean process)
+            throws Exception {
+        Path dir = Files.createTempDirectory("viewroutes");
+        Path src = dir.resolve("com/example/" + className + ".java");
+        Files.createDirectories(src.getParent());
+        Files.write(src, source.getBytes(StandardCharsets.UTF_8));
+
+        String processorPath = new File(ViewRouteProcessor.class.getProtectionDomain()
+                .getCodeSource().getLocation().toURI()).toString();
+
+        int rc;
+        if (process) {
+            rc = compiler.run(null, null, null,
+                    "-classpath", classPath(),
+                    "-processorpath", processorPath,
+                    "-processor", ViewRouteProcessor.class.getName(),
+                    "-d", dir.toString(),
+                    "-s", dir.toString(),
+                    src.toString());
+        } else {
+            rc = compiler.run(null, null, null,
+                    "-classpath", classPath(),
+                    "-proc:none",
+                    "-d", dir.toString(),
+                    src.toString());
+        }
+        Assert.assertEquals(0, rc);
+        Assert.assertEquals(process,
+                Files.exists(dir.resolve("com/example/" + className + ViewRoutes.SUFFIX + ".java")));
+        return dir;
+    }
+
+    /**
+     * Returns the class path of the running test, including the manifest class path of
+     * a surefire booter jar.
+     */
+    private static String classPath() throws IOException {
+        StringBuilder sb = new StringBuilder(System.getProperty("java.class.path"));
+        for (String entry : System.getProperty("java.class.path").split(File.pathSeparator)) {
+            if (entry.endsWith(".jar")) {
+                try (JarFile jar = new JarFile(entry)) {
+                    String cp = jar.getManifest() != null
+                            ? jar.getManifest().getMainAttributes().getValue("Class-Path")
+                            : null;
+                    if (cp != null) {
+                        for (String url : cp.split(" ")) {
+                            sb.append(File.pathSeparator).append(new File(new URL(url).getPath()));
+                        }
+                    }
+                }
+            }
+        }
+        return sb.toString();
+    }
+
+}
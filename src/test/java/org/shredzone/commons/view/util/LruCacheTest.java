@@ -0,0 +1,89 @@
+/*
+ * Shredzone Commons
+ *
+ * Copyright (C) 2012 Richard "Shred" Körber
+ *   http://commons.shredzone.org
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Library General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.shredzone.commons.view.util;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link LruCache}.
+ *
+ * @author Richard "Shred" Körber
+ */
+public class LruCacheTest {
+
+    @Test
+    public void functionalTest() {
+        LruCache<String, String> cache = new LruCache<>(2);
+        Assert.assertEquals(2, cache.getCapacity());
+
+        cache.put("a", "1");
+        cache.put("b", "2");
+        Assert.assertEquals("1", cache.get("a"));
+
+        // "b" is the least recently used entry now
+        cache.put("c", "3");
+        Assert.assertEquals(2, cache.size());
+        Assert.assertEquals("1", cache.get("a"));
+        Assert.assertNull(cache.get("b"));
+        Assert.assertEquals("3", cache.get("c"));
+
+        Assert.assertEquals(3, cache.getHits());
+        Assert.assertEquals(1, cache.getMisses());
+
+        cache.remove("a");
+        Assert.assertNull(cache.get("a"));
+
+        cache.clear();
+        Assert.assertEquals(0, cache.size());
+        Assert.assertEquals(3, cache.getHits());
+        Assert.assertEquals(2, cache.getMisses());
+    }
+
+    @Test
+    public void capacityTest() {
+        LruCache<Integer, Integer> cache = new LruCache<>(1000);
+        for (int ix = 0; ix < 10000; ix++) {
+            cache.put(ix, ix);
+        }
+        Assert.assertEquals(1000, cache.size());
+    }
+
+    @Test
+    public void removeIfTest() {
+        LruCache<Integer, String> cache = new LruCache<>(1000);
+        for (int ix = 0; ix < 100; ix++) {
+            cache.put(ix, ix % 2 == 0 ? "even" : "odd");
+        }
+
+        Assert.assertEquals(50, cache.removeIf((key, value) -> value.equals("odd")));
+        Assert.assertEquals(50, cache.size());
+        Assert.assertEquals("even", cache.get(2));
+        Assert.assertNull(cache.get(3));
+        Assert.assertEquals(0.5, cache.getHitRate(), 0.0001);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidCapacityTest() {
+        new LruCache<String, String>(0);
+    }
+
+}